@@ -0,0 +1,184 @@
+package uk.gov.eastlothian.gowalk.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.content.pm.PackageManager;
+import android.content.res.AssetManager;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.RemoteException;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads the source files walks.db is built from into the database through the
+ * content provider, so the tests can check the provider's writes and the
+ * import pipeline on a device.  The app itself only installs the prebuilt
+ * walks.db, see WalksDataLoader.
+ */
+public class SourceDataLoader {
+    public static final String LOG_TAG = SourceDataLoader.class.getSimpleName();
+
+    public static ImportReport loadWalksDatabaseFromFiles(Context context) throws IOException {
+        // the source files are assets of the test apk, not of the app
+        final AssetManager assets;
+        try {
+            assets = context.createPackageContext(context.getPackageName() + ".test", 0).getAssets();
+        } catch (PackageManager.NameNotFoundException e) {
+            throw new IOException("Cannot find the test package: " + e);
+        }
+        WalksImporter.Source source = new WalksImporter.Source() {
+            @Override
+            public InputStream open(String fileName) throws IOException {
+                return assets.open(fileName);
+            }
+        };
+        ImportReport report = new WalksImporter(source, new ProviderTarget(context)).run();
+        Log.i(LOG_TAG, report.toString());
+        return report;
+    }
+
+    /*
+     * Writes the imported rows through the content provider.
+     */
+    private static class ProviderTarget implements WalksImporter.Target {
+        private final Context mContext;
+
+        private ProviderTarget(Context context) {
+            mContext = context;
+        }
+
+        @Override
+        public void insertRoutes(List<WalksImporter.RouteRow> routes) {
+            ContentValues [] contentValues = new ContentValues[routes.size()];
+            for (int i = 0; i < routes.size(); ++i) {
+                WalksImporter.RouteRow route = routes.get(i);
+                ContentValues values = new ContentValues();
+                values.put(WalksContract.RouteEntry.COLUMN_ROUTE_NUMBER, route.routeNumber);
+                values.put(WalksContract.RouteEntry.COLUMN_COORDINATES, route.coordinates);
+                values.put(WalksContract.RouteEntry.COLUMN_COORDINATES_LOW, route.coordinatesLow);
+                values.put(WalksContract.RouteEntry.COLUMN_COORDINATES_MEDIUM, route.coordinatesMedium);
+                values.put(WalksContract.RouteEntry.COLUMN_PATH_TYPE, route.pathType);
+                values.put(WalksContract.RouteEntry.COLUMN_LENGTH, route.length);
+                values.put(WalksContract.RouteEntry.COLUMN_SURFACE, route.surface);
+                values.put(WalksContract.RouteEntry.COLUMN_DESCRIPTION, route.description);
+                values.put(WalksContract.RouteEntry.COLUMN_PRIMARY_AREA, -1);
+                values.put(WalksContract.RouteEntry.COLUMN_MIN_LAT, route.minLat);
+                values.put(WalksContract.RouteEntry.COLUMN_MIN_LNG, route.minLng);
+                values.put(WalksContract.RouteEntry.COLUMN_MAX_LAT, route.maxLat);
+                values.put(WalksContract.RouteEntry.COLUMN_MAX_LNG, route.maxLng);
+                values.put(WalksContract.RouteEntry.COLUMN_CENTRE_LAT, route.centreLat);
+                values.put(WalksContract.RouteEntry.COLUMN_CENTRE_LNG, route.centreLng);
+                values.put(WalksContract.RouteEntry.COLUMN_START_LAT, route.startLat);
+                values.put(WalksContract.RouteEntry.COLUMN_START_LNG, route.startLng);
+                values.put(WalksContract.RouteEntry.COLUMN_END_LAT, route.endLat);
+                values.put(WalksContract.RouteEntry.COLUMN_END_LNG, route.endLng);
+                values.put(WalksContract.RouteEntry.COLUMN_POINT_COUNT, route.pointCount);
+                values.put(WalksContract.RouteEntry.COLUMN_MEASURED_LENGTH, route.measuredLength);
+                contentValues[i] = values;
+            }
+            mContext.getContentResolver().bulkInsert(WalksContract.RouteEntry.CONTENT_URI, contentValues);
+        }
+
+        /*
+         * Builds an exact route number to route id map with a single query.
+         * If a route number appears more than once the first route inserted wins.
+         */
+        @Override
+        public Map<Integer, Long> loadRouteIds() {
+            Map<Integer, Long> routeIds = new HashMap<Integer, Long>();
+            Cursor cursor = mContext.getContentResolver().query(
+                    WalksContract.RouteEntry.CONTENT_URI,
+                    new String[]{WalksContract.RouteEntry._ID, WalksContract.RouteEntry.COLUMN_ROUTE_NUMBER},
+                    null,
+                    null,
+                    WalksContract.RouteEntry._ID);
+            try {
+                int idIndex = cursor.getColumnIndex(WalksContract.RouteEntry._ID);
+                int numberIndex = cursor.getColumnIndex(WalksContract.RouteEntry.COLUMN_ROUTE_NUMBER);
+                for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                    int routeNumber = cursor.getInt(numberIndex);
+                    if (!routeIds.containsKey(routeNumber)) {
+                        routeIds.put(routeNumber, cursor.getLong(idIndex));
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+            return routeIds;
+        }
+
+        @Override
+        public long insertWildlife(WalksImporter.WildlifeRow wildlife) {
+            // assign the values to database table names
+            ContentValues values = new ContentValues();
+            values.put(WalksContract.WildlifeEntry.COLUMN_WILDLIFE_NAME, wildlife.name);
+            values.put(WalksContract.WildlifeEntry.COLUMN_CATEGORY, wildlife.category);
+            values.put(WalksContract.WildlifeEntry.COLUMN_DESCRIPTION, wildlife.description);
+            values.put(WalksContract.WildlifeEntry.COLUMN_WHEN_SEEN, wildlife.whenSeen);
+            values.put(WalksContract.WildlifeEntry.COLUMN_IMAGE_NAME, wildlife.imageName);
+
+            Uri wildlifeUri = mContext.getContentResolver().insert(WalksContract.WildlifeEntry.CONTENT_URI, values);
+            return Long.parseLong(WalksContract.WildlifeEntry.getWildlifeFromUri(wildlifeUri));
+        }
+
+        @Override
+        public void insertWildlifeOnRoutes(List<long[]> links) {
+            ContentValues [] contentValues = new ContentValues[links.size()];
+            for (int i = 0; i < links.size(); ++i) {
+                ContentValues values = new ContentValues();
+                values.put(WalksContract.WildlifeOnRouteEntry.COLUMN_WILDLIFE_KEY, links.get(i)[0]);
+                values.put(WalksContract.WildlifeOnRouteEntry.COLUMN_ROUTE_KEY, links.get(i)[1]);
+                contentValues[i] = values;
+            }
+            mContext.getContentResolver().bulkInsert(WalksContract.WildlifeOnRouteEntry.CONTENT_URI, contentValues);
+        }
+
+        @Override
+        public long insertArea(String name) {
+            ContentValues values = new ContentValues();
+            values.put(WalksContract.AreaEntry.COLUMN_AREA_NAME, name);
+            Uri areaUri = mContext.getContentResolver().insert(WalksContract.AreaEntry.CONTENT_URI, values);
+            return Long.parseLong(WalksContract.AreaEntry.getAreaFromUri(areaUri));
+        }
+
+        @Override
+        public void insertRoutesInAreas(List<long[]> links) {
+            ContentValues [] contentValues = new ContentValues[links.size()];
+            for (int i = 0; i < links.size(); ++i) {
+                ContentValues values = new ContentValues();
+                values.put(WalksContract.RouteInAreaEntry.COLUMN_ROUTE_KEY, links.get(i)[0]);
+                values.put(WalksContract.RouteInAreaEntry.COLUMN_AREA_KEY, links.get(i)[1]);
+                contentValues[i] = values;
+            }
+            mContext.getContentResolver().bulkInsert(WalksContract.RouteInAreaEntry.CONTENT_URI, contentValues);
+        }
+
+        @Override
+        public void setPrimaryAreas(Map<Long, Long> primaryAreas) throws IOException {
+            ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+            String selection = WalksContract.RouteEntry._ID + " = ?";
+            for (Map.Entry<Long, Long> primaryArea : primaryAreas.entrySet()) {
+                operations.add(ContentProviderOperation.newUpdate(WalksContract.RouteEntry.CONTENT_URI)
+                        .withValue(WalksContract.RouteEntry.COLUMN_PRIMARY_AREA, primaryArea.getValue())
+                        .withSelection(selection, new String[]{ "" + primaryArea.getKey() })
+                        .build());
+            }
+            try {
+                mContext.getContentResolver().applyBatch(WalksContract.CONTENT_AUTHORITY, operations);
+            } catch (RemoteException e) {
+                throw new IOException("Error while setting the primary areas of the routes: " + e);
+            } catch (OperationApplicationException e) {
+                throw new IOException("Error while setting the primary areas of the routes: " + e);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package uk.gov.eastlothian.gowalk.data;
+
+import android.test.AndroidTestCase;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+public class TestCsvReader extends AndroidTestCase {
+
+    public void testQuotedFields() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader(
+                ",kingfisher,\"Says \"\"hello\"\", loudly\",\"181, 260,\",winter,,,,\r\n"));
+        assertTrue(csv.readRecord());
+        assertEquals(5, csv.size());
+        assertEquals("", csv.get(0));
+        assertEquals("kingfisher", csv.get(1));
+        assertEquals("Says \"hello\", loudly", csv.get(2));
+        assertEquals("181, 260,", csv.get(3));
+        assertEquals("winter", csv.get(4));
+        assertEquals("", csv.get(5));
+        assertFalse(csv.readRecord());
+    }
+
+    public void testEmbeddedNewlinesAndEmptyRecords() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader("1,\"two\nlines\"\n,,,\nlast"));
+        assertTrue(csv.readRecord());
+        assertEquals(2, csv.size());
+        assertEquals("two\nlines", csv.get(1));
+        assertTrue(csv.readRecord());
+        assertEquals(0, csv.size());
+        assertTrue(csv.readRecord());
+        assertEquals(1, csv.size());
+        assertEquals("last", csv.get(0));
+        assertFalse(csv.readRecord());
+    }
+}
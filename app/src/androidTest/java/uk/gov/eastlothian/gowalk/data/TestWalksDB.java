@@ -7,6 +7,7 @@ import android.hardware.Camera;
 import android.test.AndroidTestCase;
 import android.util.Log;
 
+import java.io.File;
 import java.util.Map;
 import java.util.Set;
 
@@ -16,6 +17,7 @@ import uk.gov.eastlothian.gowalk.data.WalksContract.RouteInAreaEntry;
 import uk.gov.eastlothian.gowalk.data.WalksContract.WildlifeEntry;
 import uk.gov.eastlothian.gowalk.data.WalksContract.WildlifeOnRouteEntry;
 import uk.gov.eastlothian.gowalk.data.WalksContract.LogEntry;
+import uk.gov.eastlothian.gowalk.model.GeoHash;
 
 /**
  * Created by davidmorrison on 20/11/14.
@@ -23,6 +25,170 @@ import uk.gov.eastlothian.gowalk.data.WalksContract.LogEntry;
 public class TestWalksDb extends AndroidTestCase {
     public static final String LOG_TAG = TestWalksDb.class.getSimpleName();
 
+    public void testInstallWalksDb() throws Throwable {
+        mContext.deleteDatabase(WalksDbHelper.DB_NAME);
+        WalksDbHelper dbHelper = new WalksDbHelper(mContext);
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+
+        // the prebuilt database is installed in place of an empty one
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + RouteEntry.TABLE_NAME, null);
+        assertTrue(cursor.moveToFirst());
+        assertTrue(cursor.getInt(0) > 0);
+        cursor.close();
+        db.close();
+
+        // and nothing is left behind from the copy
+        File tmpFile = new File(mContext.getDatabasePath(WalksDbHelper.DB_NAME).getPath() + ".tmp");
+        assertFalse(tmpFile.exists());
+    }
+
+    public void testIndexesAreCreated() throws Throwable {
+        mContext.deleteDatabase(WalksDbHelper.DB_NAME);
+        WalksDbHelper dbHelper = new WalksDbHelper(mContext);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        // a missing index is put back the next time the database is opened
+        db.execSQL("DROP INDEX route_in_area_area_route_idx");
+        assertEquals(1, WalksMigrations.missingIndexes(db).size());
+        db.close();
+        db = dbHelper.getWritableDatabase();
+        assertTrue(WalksMigrations.missingIndexes(db).isEmpty());
+        db.close();
+    }
+
+    public void testReadsDontWaitForWrites() throws Throwable {
+        mContext.deleteDatabase(WalksDbHelper.DB_NAME);
+        final WalksDbHelper dbHelper = new WalksDbHelper(mContext);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        assertTrue(db.isWriteAheadLoggingEnabled());
+        Cursor cursor = db.rawQuery("PRAGMA journal_mode", null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals("wal", cursor.getString(0).toLowerCase());
+        cursor.close();
+
+        // a query on another thread finishes while a write is still open
+        final int[] routeCount = new int[]{ -1 };
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                Cursor cursor = dbHelper.getReadableDatabase().rawQuery(
+                        "SELECT COUNT(*) FROM " + RouteEntry.TABLE_NAME, null);
+                cursor.moveToFirst();
+                routeCount[0] = cursor.getInt(0);
+                cursor.close();
+            }
+        };
+        db.beginTransaction();
+        try {
+            db.execSQL("DELETE FROM " + LogEntry.TABLE_NAME);
+            reader.start();
+            reader.join(5000);
+            assertFalse(reader.isAlive());
+            assertTrue(routeCount[0] > 0);
+        } finally {
+            db.endTransaction();
+        }
+        reader.join();
+        db.close();
+    }
+
+    public void testUpgradeKeepsLogEntries() throws Throwable {
+        mContext.deleteDatabase(WalksDbHelper.DB_NAME);
+        WalksDbHelper dbHelper = new WalksDbHelper(mContext);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        // an older build whose wildlife had other ids, with a sighting of one of them
+        db.execSQL("UPDATE wildlife SET _id = _id + 1000");
+        db.execSQL("UPDATE wildlife_on_route SET wildlife_id = wildlife_id + 1000");
+        Cursor cursor = db.rawQuery("SELECT _id, name FROM wildlife ORDER BY _id LIMIT 1 OFFSET 5", null);
+        assertTrue(cursor.moveToFirst());
+        long wildlifeId = cursor.getLong(0);
+        String name = cursor.getString(1);
+        cursor.close();
+        ContentValues values = new ContentValues();
+        values.put(LogEntry.COLUMN_WILDLIFE_KEY, wildlifeId);
+        values.put(LogEntry.COLUMN_LAT, 56.0087819);
+        values.put(LogEntry.COLUMN_LNG, -2.7517742);
+        values.put(LogEntry.COLUMN_GEOHASH, GeoHash.encode(56.0087819, -2.7517742));
+        values.put(LogEntry.COLUMN_DATATIME, "2014-11-21 13:25:28");
+        values.put(LogEntry.COLUMN_WEATHER, "Sunny");
+        values.put(LogEntry.COLUMN_IMAGE, "myphoto");
+        long logEntryId = db.insert(LogEntry.TABLE_NAME, null, values);
+        assertTrue(logEntryId != -1);
+        // a species the new build has dropped, with a sighting, and a second row with a name
+        // that is already there
+        db.execSQL("INSERT INTO wildlife (_id, name, category, description, image_name, when_seen) "
+                + "VALUES (5000, 'Dropped species', 'Bird', '', '', '')");
+        values.put(LogEntry.COLUMN_WILDLIFE_KEY, 5000);
+        long droppedLogEntryId = db.insert(LogEntry.TABLE_NAME, null, values);
+        db.execSQL("INSERT INTO wildlife (_id, name, category, description, image_name, when_seen) "
+                + "SELECT 5001, name, category, description, image_name, when_seen FROM wildlife WHERE _id = ?",
+                new Object[]{ wildlifeId });
+        int wildlifeOnRouteCount = count(db, WildlifeOnRouteEntry.TABLE_NAME);
+        db.setVersion(WalksSchema.VERSION - 1);
+        db.close();
+        dbHelper.close();
+
+        // the upgrade matches the wildlife by name, so the sighting is still of the same species
+        dbHelper = new WalksDbHelper(mContext);
+        db = dbHelper.getReadableDatabase();
+        assertEquals(WalksSchema.VERSION, db.getVersion());
+        cursor = db.rawQuery("SELECT wildlife._id, wildlife.name FROM log_entry "
+                + "INNER JOIN wildlife ON wildlife._id = log_entry.wildlife_id "
+                + "WHERE log_entry._id = ?", new String[]{ Long.toString(logEntryId) });
+        assertTrue(cursor.moveToFirst());
+        assertEquals(wildlifeId, cursor.getLong(0));
+        assertEquals(name, cursor.getString(1));
+        cursor.close();
+        // the dropped species is still there for its sighting
+        cursor = db.rawQuery("SELECT wildlife.name FROM log_entry "
+                + "INNER JOIN wildlife ON wildlife._id = log_entry.wildlife_id "
+                + "WHERE log_entry._id = ?", new String[]{ Long.toString(droppedLogEntryId) });
+        assertTrue(cursor.moveToFirst());
+        assertEquals("Dropped species", cursor.getString(0));
+        cursor.close();
+        assertEquals(wildlifeOnRouteCount, count(db, WildlifeOnRouteEntry.TABLE_NAME));
+        cursor = db.rawQuery("SELECT COUNT(*) FROM wildlife_on_route "
+                + "WHERE wildlife_id NOT IN (SELECT _id FROM wildlife)", null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(0, cursor.getInt(0));
+        cursor.close();
+        db.close();
+    }
+
+    private static int count(SQLiteDatabase db, String table) {
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + table, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testLogEntryMigration() {
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        db.execSQL("CREATE TABLE log_entry(_id INTEGER PRIMARY KEY, wildlife_id INTEGER NOT NULL, "
+                + "lat TEXT NOT NULL, lng TEXT NOT NULL, datetime TEXT NOT NULL, weather TEXT NOT NULL, "
+                + "image TEXT NOT NULL)");
+        db.execSQL("INSERT INTO log_entry VALUES (7, 1, '56.0087819', '-2.7517742', "
+                + "'2014-11-21 13:25:28', 'Sunny', 'myphoto')");
+
+        // from version 6 both migrations run, the log entry keeps its id and gets a geohash
+        assertEquals(2, WalksMigrations.migrate(db, 6));
+        Cursor cursor = db.rawQuery("SELECT _id, typeof(lat), lat, geohash FROM log_entry", null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(7, cursor.getLong(0));
+        assertEquals("real", cursor.getString(1));
+        assertEquals(56.0087819, cursor.getDouble(2), 1e-9);
+        assertEquals(GeoHash.encode(56.0087819, -2.7517742), cursor.getLong(3));
+        cursor.close();
+
+        // nothing to do when it is up to date
+        assertEquals(0, WalksMigrations.migrate(db, WalksSchema.VERSION));
+        db.close();
+    }
+
     /*
 
     public void testCreateWalksDb() throws Throwable {
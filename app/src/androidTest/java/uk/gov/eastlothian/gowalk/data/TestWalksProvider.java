@@ -1,13 +1,24 @@
 package uk.gov.eastlothian.gowalk.data;
 
+import android.content.ContentValues;
 import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
 import android.test.AndroidTestCase;
 import android.util.Log;
 
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import uk.gov.eastlothian.gowalk.data.WalksContract.AreaEntry;
+import uk.gov.eastlothian.gowalk.data.WalksContract.LogEntry;
 import uk.gov.eastlothian.gowalk.data.WalksContract.RouteEntry;
+import uk.gov.eastlothian.gowalk.model.Area;
+import uk.gov.eastlothian.gowalk.model.Route;
+import uk.gov.eastlothian.gowalk.model.RouteDetail;
+import uk.gov.eastlothian.gowalk.model.Wildlife;
 
 /**
  * Created by davidmorrison on 20/11/14.
@@ -21,12 +32,24 @@ public class TestWalksProvider extends AndroidTestCase {
 
     public void testLoadWalksContent() {
         // upload the data
+        ImportReport report = null;
         try {
-            WalksDataLoader.loadWalksDatabaseFromFiles(mContext);
+            report = SourceDataLoader.loadWalksDatabaseFromFiles(mContext);
         } catch (IOException e) {
             fail("Exception while opening Wildlife.csv. " + e.toString());
         }
 
+        // every route in the json is inserted and the files were read in full
+        ImportReport.Stage routeStage = report.getStage(WalksImporter.ROUTES_FILE);
+        assertTrue(routeStage.getRowsParsed() > 0);
+        assertEquals(routeStage.getRowsParsed(), routeStage.getRowsInserted());
+        for (ImportReport.Stage stage : report.getStages()) {
+            if (!stage.getName().equals(WalksImporter.WRITER_STAGE)) {
+                assertTrue(stage.getName(), stage.getBytesRead() > 0);
+            }
+        }
+        assertTrue(report.getGeometryPoints() > 0);
+
         // do some test queries on the data
 
         // get all the routes
@@ -62,6 +85,262 @@ public class TestWalksProvider extends AndroidTestCase {
         } while (areasCursor.moveToNext());
     }
 
+    public void testBulkInsertLogEntries() {
+        ContentValues[] values = new ContentValues[3];
+        for (int idx = 0; idx < values.length; ++idx) {
+            values[idx] = new ContentValues();
+            values[idx].put(LogEntry.COLUMN_WILDLIFE_KEY, 1);
+            values[idx].put(LogEntry.COLUMN_LAT, "56.0087819");
+            values[idx].put(LogEntry.COLUMN_LNG, "-2.7517742");
+            values[idx].put(LogEntry.COLUMN_DATATIME, "2014-11-21 13:25:28");
+            values[idx].put(LogEntry.COLUMN_WEATHER, "bulk insert test");
+            values[idx].put(LogEntry.COLUMN_IMAGE, "myphoto");
+        }
+        int inserted = mContext.getContentResolver().bulkInsert(LogEntry.CONTENT_URI, values);
+        assertEquals(values.length, inserted);
+
+        String selection = LogEntry.COLUMN_WEATHER + " = ?";
+        String[] args = new String[] { "bulk insert test" };
+        Cursor cursor = mContext.getContentResolver().query(LogEntry.CONTENT_URI,
+                null, selection, args, null);
+        assertEquals(values.length, cursor.getCount());
+        cursor.close();
+
+        mContext.getContentResolver().delete(LogEntry.CONTENT_URI, selection, args);
+    }
+
+    public void testLogEntriesByLocation() {
+        // a sighting in Haddington, one 500m north of it, one in North Berwick and one
+        // about 380m north east of Haddington, in the corner of the box around a 300m circle
+        double[][] places = { { 55.9552, -2.7844 }, { 55.9597, -2.7844 }, { 56.0580, -2.7190 },
+                { 55.9576, -2.7801 } };
+        ContentValues[] values = new ContentValues[places.length];
+        for (int idx = 0; idx < values.length; ++idx) {
+            values[idx] = new ContentValues();
+            values[idx].put(LogEntry.COLUMN_WILDLIFE_KEY, 1);
+            values[idx].put(LogEntry.COLUMN_LAT, places[idx][0]);
+            values[idx].put(LogEntry.COLUMN_LNG, places[idx][1]);
+            values[idx].put(LogEntry.COLUMN_DATATIME, "2014-11-21 13:25:28");
+            values[idx].put(LogEntry.COLUMN_WEATHER, "location test");
+            values[idx].put(LogEntry.COLUMN_IMAGE, "myphoto");
+        }
+        mContext.getContentResolver().bulkInsert(LogEntry.CONTENT_URI, values);
+        String selection = LogEntry.COLUMN_WEATHER + " = ?";
+        String[] args = new String[] { "location test" };
+
+        Cursor inBounds = mContext.getContentResolver().query(
+                LogEntry.buildLogEntriesInBoundsUri(55.93, -2.82, 55.98, -2.74), null, selection, args, null);
+        assertEquals(3, inBounds.getCount());
+        inBounds.close();
+
+        // within 300m of Haddington is just the first one, not the one in the corner of the box,
+        // within 1km the nearest is still first
+        Cursor near = mContext.getContentResolver().query(
+                LogEntry.buildLogEntriesNearUri(55.9552, -2.7844, 300), null, selection, args, null);
+        assertEquals(1, near.getCount());
+        near.close();
+        near = mContext.getContentResolver().query(
+                LogEntry.buildLogEntriesNearUri(55.9560, -2.7844, 1000), null, selection, args, null);
+        assertEquals(3, near.getCount());
+        near.moveToFirst();
+        assertEquals(55.9552, near.getDouble(near.getColumnIndex(LogEntry.COLUMN_LAT)), 1e-6);
+        near.close();
+
+        mContext.getContentResolver().delete(LogEntry.CONTENT_URI, selection, args);
+    }
+
+    public void testInvertedLogEntryBoundsAreRejected() {
+        try {
+            mContext.getContentResolver().query(
+                    LogEntry.buildLogEntriesInBoundsUri(55.98, -2.74, 55.93, -2.82), null, null, null, null);
+            fail("Expected the inverted bounds to be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testRoutesInBounds() {
+        // around Haddington, the same routes as filtering the route table by hand
+        double minLat = 55.93, minLng = -2.82, maxLat = 55.98, maxLng = -2.74;
+        Cursor inBounds = mContext.getContentResolver().query(
+                RouteEntry.buildRoutesInBoundsUri(minLat, minLng, maxLat, maxLng),
+                new String[]{ RouteEntry._ID }, null, null, null);
+        String selection = RouteEntry.COLUMN_MIN_LAT + " <= ? AND " + RouteEntry.COLUMN_MAX_LAT + " >= ? AND "
+                + RouteEntry.COLUMN_MIN_LNG + " <= ? AND " + RouteEntry.COLUMN_MAX_LNG + " >= ?";
+        String[] args = new String[]{ "" + maxLat, "" + minLat, "" + maxLng, "" + minLng };
+        Cursor filtered = mContext.getContentResolver().query(RouteEntry.CONTENT_URI,
+                new String[]{ RouteEntry._ID }, selection, args, null);
+        assertTrue(inBounds.getCount() > 0);
+        assertEquals(filtered.getCount(), inBounds.getCount());
+        inBounds.close();
+        filtered.close();
+
+        try {
+            mContext.getContentResolver().query(RouteEntry.CONTENT_URI.buildUpon().appendPath("bbox").build(),
+                    null, null, null, null);
+            fail("Expected the missing bounds to be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testNearestRoutes() {
+        // from the middle of Haddington, nearest first with a distance for each
+        Cursor cursor = mContext.getContentResolver().query(
+                RouteEntry.buildNearestRoutesUri(55.9552045, -2.7843538, 5),
+                new String[]{ RouteEntry._ID, RouteEntry.COLUMN_DISTANCE }, null, null, null);
+        assertEquals(5, cursor.getCount());
+        assertEquals(2, cursor.getColumnCount());
+        int distanceIndex = cursor.getColumnIndex(RouteEntry.COLUMN_DISTANCE);
+        double last = 0.0;
+        for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+            double distance = cursor.getDouble(distanceIndex);
+            assertTrue(distance >= last);
+            last = distance;
+        }
+        assertTrue(last < 5000.0);
+        cursor.close();
+
+        // nothing is that close to the middle of the firth
+        Uri uri = RouteEntry.buildNearestRoutesUri(56.1, -2.7, 5).buildUpon()
+                .appendQueryParameter(RouteEntry.PARAM_MAX_DISTANCE, "100").build();
+        cursor = mContext.getContentResolver().query(uri, null, null, null, null);
+        assertEquals(0, cursor.getCount());
+        cursor.close();
+    }
+
+    public void testRouteDetail() {
+        // a route with some wildlife and the first area it is in
+        Cursor cursor = mContext.getContentResolver().query(WalksContract.WildlifeOnRouteEntry.CONTENT_URI,
+                null, null, null, null);
+        assertTrue(cursor.moveToFirst());
+        long routeId = cursor.getLong(cursor.getColumnIndex(WalksContract.WildlifeOnRouteEntry.COLUMN_ROUTE_KEY));
+        cursor.close();
+        List<Area> areas = Area.fromCursor(mContext.getContentResolver().query(
+                RouteEntry.buildAreasForRouteUri(routeId), null, null, null, null));
+        List<Wildlife> wildlife = Wildlife.fromCursor(mContext.getContentResolver().query(
+                RouteEntry.buildWildlifeOnRouteUri(routeId), null, null, null, null));
+        assertFalse(wildlife.isEmpty());
+
+        // the one cursor has the same route, area and wildlife as the separate queries
+        cursor = mContext.getContentResolver().query(
+                RouteEntry.buildRouteDetailUri(routeId, areas.get(0).getId()),
+                new String[]{ RouteEntry._ID, RouteEntry.COLUMN_ROUTE_NUMBER }, null, null, null);
+        assertEquals(2 + wildlife.size(), cursor.getCount());
+        RouteDetail detail = RouteDetail.fromCursor(cursor);
+        cursor.close();
+        assertEquals(routeId, detail.getRoute().getId());
+        assertEquals(areas.get(0).getName(), detail.getArea().getName());
+        Set<Long> wildlifeIds = new HashSet<Long>();
+        for (Wildlife wl : wildlife) {
+            wildlifeIds.add(wl.getId());
+        }
+        for (Wildlife wl : detail.getWildlife()) {
+            assertTrue(wildlifeIds.remove(wl.getId()));
+        }
+        assertTrue(wildlifeIds.isEmpty());
+
+        // no area, just the route and its wildlife
+        cursor = mContext.getContentResolver().query(
+                RouteEntry.buildRouteDetailUri(routeId, -1), null, null, null, null);
+        detail = RouteDetail.fromCursor(cursor);
+        cursor.close();
+        assertNotNull(detail.getRoute());
+        assertNull(detail.getArea());
+    }
+
+    public void testRoutesWithoutGeometry() {
+        // their summary columns are NULL rather than zero, so they have no centre or ends
+        Cursor cursor = mContext.getContentResolver().query(RouteEntry.CONTENT_URI, null,
+                RouteEntry.COLUMN_POINT_COUNT + " = 0", null, null);
+        List<Route> routes = Route.fromCursor(cursor);
+        cursor.close();
+        assertFalse(routes.isEmpty());
+        for (Route route : routes) {
+            assertTrue(Double.isNaN(route.getMinLat()));
+            assertNull(route.centrePoint());
+            assertNull(route.startPoint());
+            assertNull(route.endPoint());
+        }
+    }
+
+    public void testRoutesForAreas() {
+        // one row per route in each area, in order of area, the same routes as each area's own query
+        Cursor cursor = mContext.getContentResolver().query(AreaEntry.getRoutesForAreas(),
+                new String[]{ RouteEntry._ID, RouteEntry.COLUMN_ROUTE_NUMBER }, null, null, null);
+        int areaIdIndex = cursor.getColumnIndex(WalksContract.RouteInAreaEntry.COLUMN_AREA_KEY);
+        int routeIdIndex = cursor.getColumnIndex(RouteEntry._ID);
+        assertEquals(4, cursor.getColumnCount());
+        Set<Long> areaIds = new HashSet<Long>();
+        long lastAreaId = -1;
+        for (cursor.moveToFirst(); !cursor.isAfterLast(); ) {
+            long areaId = cursor.getLong(areaIdIndex);
+            assertTrue(areaId > lastAreaId);
+            lastAreaId = areaId;
+            areaIds.add(areaId);
+
+            Set<Long> routeIds = new HashSet<Long>();
+            for (; !cursor.isAfterLast() && cursor.getLong(areaIdIndex) == areaId; cursor.moveToNext()) {
+                if (!cursor.isNull(routeIdIndex)) {
+                    routeIds.add(cursor.getLong(routeIdIndex));
+                }
+            }
+            Cursor areaRoutes = mContext.getContentResolver().query(AreaEntry.buildRoutesInAreaUri(areaId),
+                    new String[]{ RouteEntry._ID }, null, null, null);
+            assertEquals(areaRoutes.getCount(), routeIds.size());
+            for (areaRoutes.moveToFirst(); !areaRoutes.isAfterLast(); areaRoutes.moveToNext()) {
+                assertTrue(routeIds.contains(areaRoutes.getLong(0)));
+            }
+            areaRoutes.close();
+        }
+        cursor.close();
+
+        // every area is there, even one without routes
+        cursor = mContext.getContentResolver().query(AreaEntry.CONTENT_URI, null, null, null, null);
+        assertEquals(cursor.getCount(), areaIds.size());
+        cursor.close();
+    }
+
+    public void testSqlTemplatesAreReused() {
+        // the same query for two different routes finds the sql built for the first
+        String[] projection = new String[]{ RouteEntry._ID, RouteEntry.COLUMN_ROUTE_NUMBER };
+        Cursor cursor = mContext.getContentResolver().query(
+                RouteEntry.buildRouteUri(1), projection, null, null, null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(1, cursor.getLong(0));
+        cursor.close();
+        Bundle before = mContext.getContentResolver().call(
+                WalksContract.BASE_CONTENT_URI, WalksContract.METHOD_SQL_TEMPLATE_STATS, null, null);
+
+        cursor = mContext.getContentResolver().query(
+                RouteEntry.buildRouteUri(2), projection, null, null, null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(2, cursor.getLong(0));
+        cursor.close();
+        Bundle after = mContext.getContentResolver().call(
+                WalksContract.BASE_CONTENT_URI, WalksContract.METHOD_SQL_TEMPLATE_STATS, null, null);
+
+        assertEquals(before.getLong(WalksContract.KEY_SQL_TEMPLATE_HITS) + 1, after.getLong(WalksContract.KEY_SQL_TEMPLATE_HITS));
+        assertEquals(before.getLong(WalksContract.KEY_SQL_TEMPLATE_MISSES), after.getLong(WalksContract.KEY_SQL_TEMPLATE_MISSES));
+        assertTrue(after.getInt(WalksContract.KEY_SQL_TEMPLATES) > 0);
+    }
+
+    public void testProjectedRoutesInArea() {
+        // the joined query only returns the columns asked for
+        String[] projection = new String[] {
+                RouteEntry._ID,
+                RouteEntry.COLUMN_ROUTE_NUMBER,
+                WalksContract.RouteInAreaEntry.TABLE_NAME + "." + WalksContract.RouteInAreaEntry.COLUMN_AREA_KEY
+        };
+        Cursor cursor = mContext.getContentResolver().query(AreaEntry.buildRoutesInAreaUri(1),
+                projection, null, null, null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(3, cursor.getColumnCount());
+        assertEquals(-1, cursor.getColumnIndex(RouteEntry.COLUMN_COORDINATES));
+        assertEquals(1, cursor.getLong(cursor.getColumnIndex(WalksContract.RouteInAreaEntry.COLUMN_AREA_KEY)));
+        cursor.close();
+    }
+
     /*
     public void testDeleteWalksDb() throws Throwable {
         mContext.deleteDatabase(WalksDbHelper.DB_NAME);
@@ -72,6 +351,7 @@ public class TestWalksProvider extends AndroidTestCase {
         expectMimeType(RouteEntry.buildRouteUri(1234), RouteEntry.CONTENT_ITEM_TYPE);
         expectMimeType(RouteEntry.buildAreasForRouteUri(4321), AreaEntry.CONTENT_TYPE);
         expectMimeType(RouteEntry.buildWildlifeOnRouteUri(5678), WildlifeEntry.CONTENT_TYPE);
+        expectMimeType(RouteEntry.buildRouteDetailUri(1234, 9012), RouteEntry.CONTENT_TYPE);
 
         expectMimeType(AreaEntry.CONTENT_URI, AreaEntry.CONTENT_TYPE);
         expectMimeType(AreaEntry.buildAreaUri(9012), AreaEntry.CONTENT_ITEM_TYPE);
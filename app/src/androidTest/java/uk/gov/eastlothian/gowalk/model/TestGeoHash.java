@@ -0,0 +1,46 @@
+package uk.gov.eastlothian.gowalk.model;
+
+import android.test.AndroidTestCase;
+
+import java.util.Random;
+
+public class TestGeoHash extends AndroidTestCase {
+
+    public void testMatchesBase32Geohash() {
+        // the example from the geohash wikipedia page, u4pruydqqvj, to 10 characters
+        assertEquals("u4pruydqqv", GeoHash.toBase32(GeoHash.encode(57.64911, 10.40744)));
+        // Haddington
+        assertEquals("gcyn2dk6xy", GeoHash.toBase32(GeoHash.encode(55.9552045, -2.7843538)));
+    }
+
+    public void testInvertedBox() {
+        try {
+            GeoHash.coveringRanges(55.98, -2.82, 55.93, -2.74, 8);
+            fail("Expected the inverted box to be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testCoveringRangesHoldEveryPointInTheBox() {
+        Random random = new Random(3);
+        double minLat = 55.93, minLng = -2.82, maxLat = 55.98, maxLng = -2.74;
+        long[] ranges = GeoHash.coveringRanges(minLat, minLng, maxLat, maxLng, 8);
+        assertTrue(ranges.length >= 2 && ranges.length <= 16);
+        for (int idx = 2; idx < ranges.length; idx += 2) {
+            // sorted and not touching, or they would have been merged
+            assertTrue(ranges[idx] > ranges[idx - 1] + 1);
+        }
+
+        for (int point = 0; point < 1000; ++point) {
+            double lat = minLat + random.nextDouble() * (maxLat - minLat);
+            double lng = minLng + random.nextDouble() * (maxLng - minLng);
+            long hash = GeoHash.encode(lat, lng);
+            boolean covered = false;
+            for (int idx = 0; idx < ranges.length; idx += 2) {
+                covered |= hash >= ranges[idx] && hash <= ranges[idx + 1];
+            }
+            assertTrue(covered);
+        }
+    }
+}
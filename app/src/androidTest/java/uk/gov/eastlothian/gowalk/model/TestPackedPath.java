@@ -0,0 +1,80 @@
+package uk.gov.eastlothian.gowalk.model;
+
+import android.test.AndroidTestCase;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.List;
+
+public class TestPackedPath extends AndroidTestCase {
+
+    // two lines, the first with three points and the second with two
+    private static PackedPath makePath() {
+        double[] lats = { 55.95, 55.96, 55.97, 56.00, 56.01 };
+        double[] lngs = { -2.78, -2.77, -2.79, -2.70, -2.70 };
+        return new PackedPath(lats, lngs, new int[]{ 0, 3 });
+    }
+
+    public void testPartsAndSegments() {
+        PackedPath path = makePath();
+        assertEquals(5, path.size());
+        assertEquals(2, path.getPartCount());
+        assertEquals(3, path.getPartEnd(0));
+        assertEquals(5, path.getPartEnd(1));
+
+        // no segment joins the two lines
+        assertEquals(3, path.getSegmentCount());
+        assertEquals(0, path.getSegmentStart(0));
+        assertEquals(1, path.getSegmentStart(1));
+        assertEquals(3, path.getSegmentStart(2));
+
+        List<LatLng> secondLine = path.asLatLngs(1);
+        assertEquals(2, secondLine.size());
+        assertEquals(56.00, secondLine.get(0).latitude, 1e-9);
+    }
+
+    public void testBoundsAndLength() {
+        PackedPath path = makePath();
+        assertEquals(55.95, path.getMinLat(), 1e-9);
+        assertEquals(56.01, path.getMaxLat(), 1e-9);
+        assertEquals(-2.79, path.getMinLng(), 1e-9);
+        assertEquals(-2.70, path.getMaxLng(), 1e-9);
+
+        // 0.01 degrees of latitude is about 1112m
+        PackedPath line = new PackedPath(new double[]{ 56.00, 56.01 }, new double[]{ -2.70, -2.70 }, new int[]{ 0 });
+        assertEquals(1112.0, line.getLengthMetres(), 1.0);
+    }
+
+    public void testCentreMatchesTheStoredCentre() {
+        // the route table's centre comes from PathMeasure, the path gives the same one
+        double[] lats = { 55.95, 55.96, 55.97, 56.00, 56.01 };
+        double[] lngs = { -2.78, -2.77, -2.79, -2.70, -2.70 };
+        PathMeasure measure = new PathMeasure(lats, lngs, 5, new int[]{ 0, 3 }, 2);
+        LatLng centre = makePath().getCentre();
+        assertEquals(measure.getCentreLat(), centre.latitude, 1e-9);
+        assertEquals(measure.getCentreLng(), centre.longitude, 1e-9);
+    }
+
+    public void testEmptyPathHasNoCentre() {
+        PackedPath path = new PackedPath(new double[0], new double[0], new int[0]);
+        assertTrue(path.isEmpty());
+        assertNull(path.getCentre());
+        assertNull(path.getBounds());
+        assertTrue(Double.isNaN(path.getMinLat()));
+        assertEquals(0.0, path.getLengthMetres());
+    }
+
+    public void testCursor() {
+        PackedPath.PointCursor cursor = makePath().cursor();
+        int count = 0;
+        int partStarts = 0;
+        while (cursor.moveToNext()) {
+            if (cursor.isPartStart()) {
+                ++partStarts;
+            }
+            ++count;
+        }
+        assertEquals(5, count);
+        assertEquals(2, partStarts);
+    }
+}
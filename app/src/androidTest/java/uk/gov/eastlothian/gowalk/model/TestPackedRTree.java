@@ -0,0 +1,117 @@
+package uk.gov.eastlothian.gowalk.model;
+
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+public class TestPackedRTree extends AndroidTestCase {
+
+    public void testSearchMatchesBruteForce() {
+        Random random = new Random(42);
+        int count = 1000;
+        double[] minX = new double[count];
+        double[] minY = new double[count];
+        double[] maxX = new double[count];
+        double[] maxY = new double[count];
+        for (int idx = 0; idx < count; ++idx) {
+            minX[idx] = random.nextDouble() * 100.0;
+            minY[idx] = random.nextDouble() * 100.0;
+            maxX[idx] = minX[idx] + random.nextDouble() * 5.0;
+            maxY[idx] = minY[idx] + random.nextDouble() * 5.0;
+        }
+        PackedRTree tree = new PackedRTree(minX, minY, maxX, maxY, count);
+        assertEquals(count, tree.size());
+
+        for (int query = 0; query < 50; ++query) {
+            double x = random.nextDouble() * 100.0;
+            double y = random.nextDouble() * 100.0;
+            double size = random.nextDouble() * 10.0;
+
+            final List<Integer> found = new ArrayList<Integer>();
+            tree.search(x, y, x + size, y + size, new PackedRTree.Visitor() {
+                @Override
+                public void visit(int item) {
+                    found.add(item);
+                }
+            });
+
+            List<Integer> expected = new ArrayList<Integer>();
+            for (int idx = 0; idx < count; ++idx) {
+                if (minX[idx] <= x + size && minY[idx] <= y + size && maxX[idx] >= x && maxY[idx] >= y) {
+                    expected.add(idx);
+                }
+            }
+            Collections.sort(found);
+            assertEquals(expected, found);
+        }
+    }
+
+    public void testNearestMatchesBruteForce() {
+        Random random = new Random(7);
+        final int count = 500;
+        final double[] xs = new double[count];
+        final double[] ys = new double[count];
+        for (int idx = 0; idx < count; ++idx) {
+            xs[idx] = random.nextDouble() * 100.0;
+            ys[idx] = random.nextDouble() * 100.0;
+        }
+        PackedRTree tree = new PackedRTree(xs, ys, xs, ys, count);
+
+        final double x = 40.0, y = 60.0;
+        final List<Integer> nearest = new ArrayList<Integer>();
+        final List<Double> distances = new ArrayList<Double>();
+        tree.nearest(x, y, 1.0, 1.0, 20.0, new PackedRTree.Distance() {
+            @Override
+            public double to(int item) {
+                return Math.hypot(xs[item] - x, ys[item] - y);
+            }
+        }, new PackedRTree.NearestVisitor() {
+            @Override
+            public boolean visit(int item, double distance) {
+                nearest.add(item);
+                distances.add(distance);
+                return nearest.size() < 10;
+            }
+        });
+
+        // the ten nearest by brute force, all well inside the 20 limit
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int idx = 0; idx < count; ++idx) {
+            expected.add(idx);
+        }
+        Collections.sort(expected, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer lhs, Integer rhs) {
+                return Double.compare(Math.hypot(xs[lhs] - x, ys[lhs] - y), Math.hypot(xs[rhs] - x, ys[rhs] - y));
+            }
+        });
+        assertEquals(expected.subList(0, 10), nearest);
+        for (int idx = 1; idx < distances.size(); ++idx) {
+            assertTrue(distances.get(idx - 1) <= distances.get(idx));
+        }
+    }
+
+    public void testSmallTrees() {
+        final List<Integer> found = new ArrayList<Integer>();
+        PackedRTree.Visitor visitor = new PackedRTree.Visitor() {
+            @Override
+            public void visit(int item) {
+                found.add(item);
+            }
+        };
+
+        PackedRTree empty = new PackedRTree(new double[0], new double[0], new double[0], new double[0], 0);
+        empty.search(-1.0, -1.0, 1.0, 1.0, visitor);
+        assertTrue(found.isEmpty());
+
+        PackedRTree single = new PackedRTree(new double[]{ 0.0 }, new double[]{ 0.0 },
+                new double[]{ 1.0 }, new double[]{ 1.0 }, 1);
+        single.search(0.5, 0.5, 0.5, 0.5, visitor);
+        assertEquals(1, found.size());
+        assertEquals(0, (int) found.get(0));
+    }
+}
@@ -0,0 +1,71 @@
+package uk.gov.eastlothian.gowalk.model;
+
+import android.test.AndroidTestCase;
+
+import java.util.Arrays;
+
+public class TestPathCodec extends AndroidTestCase {
+
+    public void testRoundTrip() {
+        double[] lats = { 55.9561054, 55.9561990, 55.9502, -0.0000004 };
+        double[] lngs = { -2.7770153, -2.7771112, -2.958, 179.9999999 };
+        int[] partStarts = { 0, 2 };
+        byte[] blob = PathCodec.encode(lats, lngs, 4, partStarts, 2);
+
+        assertEquals(4, PathCodec.getPointCount(blob));
+        assertEquals(2, PathCodec.getPartCount(blob));
+        double[] decodedLats = new double[4];
+        double[] decodedLngs = new double[4];
+        int[] decodedStarts = new int[2];
+        assertEquals(4, PathCodec.decode(blob, decodedLats, decodedLngs, decodedStarts));
+        for (int idx = 0; idx < 4; ++idx) {
+            assertEquals(lats[idx], decodedLats[idx], 1e-6);
+            assertEquals(lngs[idx], decodedLngs[idx], 1e-6);
+        }
+        assertEquals(0, decodedStarts[0]);
+        assertEquals(2, decodedStarts[1]);
+    }
+
+    public void testEmptyPath() {
+        byte[] blob = PathCodec.encode(new double[0], new double[0], 0, new int[0], 0);
+        assertEquals(0, PathCodec.getPointCount(blob));
+        assertEquals(0, PathCodec.getPartCount(blob));
+    }
+
+    public void testUnknownVersion() {
+        try {
+            PathCodec.getPointCount(new byte[]{ 99, 0, 0 });
+            fail("Expected the unknown version to be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testCorruptBlobs() {
+        byte[] blob = PathCodec.encode(new double[]{ 55.95, 55.96 }, new double[]{ -2.78, -2.79 }, 2,
+                new int[]{ 0 }, 1);
+        byte[][] corrupt = {
+                // truncated in the middle of the points
+                Arrays.copyOf(blob, blob.length - 3),
+                // a point count that is negative as an int
+                { 1, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f, 0 },
+                // a point count far bigger than the blob
+                { 1, (byte) 0xff, (byte) 0xff, 0x7f, 0 },
+                // a varint that never ends
+                { 1, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0 },
+                // parts that don't add up to the points
+                { 1, 1, 1, 2, 0, 0 }
+        };
+        for (byte[] bad : corrupt) {
+            try {
+                int pointCount = PathCodec.getPointCount(bad);
+                PathCodec.decode(bad, new double[pointCount], new double[pointCount],
+                        new int[PathCodec.getPartCount(bad)]);
+                fail("Expected a corrupt blob to be rejected");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+            assertTrue(PackedPath.fromBlob(bad).isEmpty());
+        }
+    }
+}
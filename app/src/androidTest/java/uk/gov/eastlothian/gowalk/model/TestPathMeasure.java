@@ -0,0 +1,35 @@
+package uk.gov.eastlothian.gowalk.model;
+
+import android.test.AndroidTestCase;
+
+public class TestPathMeasure extends AndroidTestCase {
+
+    public void testCentreIsWeightedByLength() {
+        // a 1km leg east then a short leg north made of lots of points,
+        // the centre should stay near the middle of the long leg
+        double[] lats = { 55.95, 55.95, 55.9501, 55.9502, 55.9503, 55.9504, 55.9505 };
+        double[] lngs = { -2.80, -2.784, -2.784, -2.784, -2.784, -2.784, -2.784 };
+        PathMeasure measure = new PathMeasure(lats, lngs, 7, new int[]{ 0 }, 1);
+
+        assertEquals(-2.792, measure.getCentreLng(), 0.001);
+        assertEquals(55.95, measure.getCentreLat(), 0.0001);
+        assertEquals(1000.0 + 55.6, measure.getLengthMetres(), 5.0);
+    }
+
+    public void testGapsBetweenPartsAreNotMeasured() {
+        double[] lats = { 55.95, 55.951, 56.0, 56.001 };
+        double[] lngs = { -2.78, -2.78, -2.70, -2.70 };
+        PathMeasure measure = new PathMeasure(lats, lngs, 4, new int[]{ 0, 2 }, 2);
+
+        assertEquals(2 * 111.2, measure.getLengthMetres(), 1.0);
+        assertEquals(55.9755, measure.getCentreLat(), 1e-6);
+    }
+
+    public void testSinglePointIsItsOwnCentre() {
+        PathMeasure measure = new PathMeasure(new double[]{ 55.95 }, new double[]{ -2.78 }, 1, new int[]{ 0 }, 1);
+
+        assertEquals(0.0, measure.getLengthMetres());
+        assertEquals(55.95, measure.getCentreLat());
+        assertEquals(-2.78, measure.getCentreLng());
+    }
+}
@@ -0,0 +1,50 @@
+package uk.gov.eastlothian.gowalk.model;
+
+import android.test.AndroidTestCase;
+
+public class TestPathSimplifier extends AndroidTestCase {
+
+    public void testStraightLineKeepsEnds() {
+        // 11 points along a line of latitude, about 60m apart
+        double[] lats = new double[11];
+        double[] lngs = new double[11];
+        for (int idx = 0; idx < 11; ++idx) {
+            lats[idx] = 55.95;
+            lngs[idx] = -2.78 + idx * 0.001;
+        }
+        byte[] blob = PathSimplifier.simplify(lats, lngs, 11, new int[]{ 0 }, 1, 10.0);
+
+        PackedPath path = PackedPath.fromBlob(blob);
+        assertEquals(2, path.size());
+        assertEquals(-2.78, path.getLng(0), 1e-6);
+        assertEquals(-2.77, path.getLng(1), 1e-6);
+    }
+
+    public void testCornerIsKept() {
+        // a right angle with a 1km leg, the corner is far outside the tolerance
+        // and the 2m wobble is inside it
+        double[] lats = { 55.95, 55.95, 55.95, 55.95000002, 55.959 };
+        double[] lngs = { -2.78, -2.775, -2.77, -2.77, -2.77 };
+        byte[] blob = PathSimplifier.simplify(lats, lngs, 5, new int[]{ 0 }, 1, 10.0);
+
+        PackedPath path = PackedPath.fromBlob(blob);
+        assertEquals(3, path.size());
+        assertEquals(-2.77, path.getLng(1), 1e-6);
+        assertEquals(55.95, path.getLat(1), 1e-6);
+    }
+
+    public void testPartsArePreserved() {
+        double[] lats = { 55.95, 55.9501, 55.9502, 56.0, 56.0001, 56.0002, 56.1 };
+        double[] lngs = { -2.78, -2.78, -2.78, -2.70, -2.70, -2.70, -2.60 };
+        int[] partStarts = { 0, 3, 6 };
+        byte[] blob = PathSimplifier.simplify(lats, lngs, 7, partStarts, 3, 40.0);
+
+        PackedPath path = PackedPath.fromBlob(blob);
+        assertEquals(3, path.getPartCount());
+        assertEquals(5, path.size());
+        assertEquals(0, path.getPartStart(0));
+        assertEquals(2, path.getPartStart(1));
+        assertEquals(4, path.getPartStart(2));
+        assertEquals(56.1, path.getLat(4), 1e-6);
+    }
+}
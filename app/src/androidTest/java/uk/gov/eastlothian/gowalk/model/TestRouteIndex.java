@@ -0,0 +1,61 @@
+package uk.gov.eastlothian.gowalk.model;
+
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestRouteIndex extends AndroidTestCase {
+
+    private static Route makeRoute(long id, double[] lats, double[] lngs, int[] partStarts) {
+        byte[] blob = PathCodec.encode(lats, lngs, lats.length, partStarts, partStarts.length);
+        return new Route(id, (int) id, blob, 0, "", "", -1);
+    }
+
+    public void testFindNearestRoute() {
+        List<Route> routes = new ArrayList<Route>();
+        // an east-west route and a north-south route about 300m apart
+        routes.add(makeRoute(1, new double[]{ 55.95, 55.95, 55.95 },
+                new double[]{ -2.80, -2.79, -2.78 }, new int[]{ 0 }));
+        routes.add(makeRoute(2, new double[]{ 55.9527, 55.96 },
+                new double[]{ -2.785, -2.785 }, new int[]{ 0 }));
+        RouteIndex index = new RouteIndex(routes);
+
+        // about 50m north of the middle of the first segment of route 1
+        assertEquals(1, index.findNearestRoute(55.95045, -2.795, 100.0).getId());
+        // about 30m east of route 2
+        assertEquals(2, index.findNearestRoute(55.955, -2.7845, 100.0).getId());
+        // nothing within 100m
+        assertNull(index.findNearestRoute(56.0, -2.795, 100.0));
+    }
+
+    public void testFindNearestRoutes() {
+        List<Route> routes = new ArrayList<Route>();
+        // three east-west routes, 0m, about 220m and about 550m north of the point
+        routes.add(makeRoute(1, new double[]{ 55.95, 55.95 }, new double[]{ -2.80, -2.78 }, new int[]{ 0 }));
+        routes.add(makeRoute(2, new double[]{ 55.952, 55.952 }, new double[]{ -2.80, -2.78 }, new int[]{ 0 }));
+        routes.add(makeRoute(3, new double[]{ 55.955, 55.955 }, new double[]{ -2.80, -2.78 }, new int[]{ 0 }));
+        RouteIndex index = new RouteIndex(routes);
+
+        List<RouteIndex.Neighbour> nearest = index.findNearestRoutes(55.95, -2.79, 2, Double.POSITIVE_INFINITY);
+        assertEquals(2, nearest.size());
+        assertEquals(1, nearest.get(0).getRoute().getId());
+        assertEquals(0.0, nearest.get(0).getDistanceMetres(), 1.0);
+        assertEquals(2, nearest.get(1).getRoute().getId());
+        assertEquals(222.6, nearest.get(1).getDistanceMetres(), 1.0);
+
+        // the limit leaves out the furthest route even when more are asked for
+        assertEquals(2, index.findNearestRoutes(55.95, -2.79, 5, 300.0).size());
+        assertEquals(3, index.findNearestRoutes(55.95, -2.79, 5, 1000.0).size());
+    }
+
+    public void testSinglePointPart() {
+        List<Route> routes = new ArrayList<Route>();
+        routes.add(makeRoute(3, new double[]{ 55.95, 55.96, 55.97 },
+                new double[]{ -2.80, -2.80, -2.70 }, new int[]{ 0, 2 }));
+        RouteIndex index = new RouteIndex(routes);
+
+        assertEquals(3, index.findNearestRoute(55.9700, -2.7001, 50.0).getId());
+        assertNull(index.findNearestRoute(55.9700, -2.7100, 50.0));
+    }
+}
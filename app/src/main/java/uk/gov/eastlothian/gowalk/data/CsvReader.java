@@ -0,0 +1,164 @@
+package uk.gov.eastlothian.gowalk.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads RFC 4180 csv a record at a time in a single pass over the input.
+ *
+ * Quoted fields may contain commas, doubled quotes and line breaks.  Empty
+ * fields at the end of a record are skipped without being stored, so the long
+ * runs of trailing commas our spreadsheet exports contain cost next to nothing.
+ */
+public class CsvReader implements Closeable {
+
+    private static final int END_OF_INPUT = -1;
+
+    private final Reader mReader;
+    private final char[] mBuffer = new char[8192];
+    private int mPosition = 0;
+    private int mLimit = 0;
+
+    // the field being read and the fields of the current record
+    private final StringBuilder mField = new StringBuilder();
+    private final List<String> mFields = new ArrayList<String>();
+    private int mPendingEmptyFields = 0;
+
+    public CsvReader(InputStream inStream) {
+        this(new InputStreamReader(inStream, Charset.forName("UTF-8")));
+    }
+
+    public CsvReader(Reader reader) {
+        mReader = reader;
+    }
+
+    /**
+     * Reads the next record.  Returns false once the input is exhausted.
+     */
+    public boolean readRecord() throws IOException {
+        mFields.clear();
+        mPendingEmptyFields = 0;
+
+        int c = read();
+        if (c == END_OF_INPUT) {
+            return false;
+        }
+        while (true) {
+            // read one field, c is its first character
+            mField.setLength(0);
+            if (c == '"') {
+                c = readQuotedField();
+            } else {
+                while (c != ',' && c != '\n' && c != '\r' && c != END_OF_INPUT) {
+                    mField.append((char) c);
+                    c = read();
+                }
+            }
+            endField();
+
+            if (c == ',') {
+                c = read();
+                // skip straight over runs of empty fields
+                while (c == ',') {
+                    ++mPendingEmptyFields;
+                    c = read();
+                }
+                if (c == '\n' || c == '\r' || c == END_OF_INPUT) {
+                    break; // only empty fields left on this line
+                }
+            } else {
+                break;
+            }
+        }
+        if (c == '\r' && peek() == '\n') {
+            read();
+        }
+        return true;
+    }
+
+    /**
+     * The number of fields in the current record, ignoring trailing empty fields.
+     */
+    public int size() {
+        return mFields.size();
+    }
+
+    /**
+     * The field at index in the current record or an empty string if there is no such field.
+     */
+    public String get(int index) {
+        if (index < 0 || index >= mFields.size()) {
+            return "";
+        }
+        return mFields.get(index);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mReader.close();
+    }
+
+    // private
+
+    // reads a field that began with a quote and returns the character after it
+    private int readQuotedField() throws IOException {
+        int c = read();
+        while (c != END_OF_INPUT) {
+            if (c == '"') {
+                c = read();
+                if (c != '"') {
+                    break; // closing quote
+                }
+            }
+            mField.append((char) c);
+            c = read();
+        }
+        // be lenient about anything between the closing quote and the separator
+        while (c != ',' && c != '\n' && c != '\r' && c != END_OF_INPUT) {
+            mField.append((char) c);
+            c = read();
+        }
+        return c;
+    }
+
+    private void endField() {
+        if (mField.length() == 0) {
+            ++mPendingEmptyFields;
+            return;
+        }
+        for (; mPendingEmptyFields > 0; --mPendingEmptyFields) {
+            mFields.add("");
+        }
+        mFields.add(mField.toString());
+    }
+
+    private int read() throws IOException {
+        if (mPosition == mLimit && !fill()) {
+            return END_OF_INPUT;
+        }
+        return mBuffer[mPosition++];
+    }
+
+    private int peek() throws IOException {
+        if (mPosition == mLimit && !fill()) {
+            return END_OF_INPUT;
+        }
+        return mBuffer[mPosition];
+    }
+
+    private boolean fill() throws IOException {
+        int read = mReader.read(mBuffer, 0, mBuffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        mPosition = 0;
+        mLimit = read;
+        return true;
+    }
+}
@@ -0,0 +1,285 @@
+package uk.gov.eastlothian.gowalk.data;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streams the features out of a GeoJSON FeatureCollection one at a time.
+ *
+ * Only the feature being read is ever held in memory, so the cost of reading
+ * core_paths.json does not grow with the size of the path network.  The
+ * geometry coordinates are read into primitive arrays that are reused from
+ * feature to feature, split into parts (the lines of a MultiLineString), and
+ * the bounding box of the points is worked out on the way through.
+ */
+public class GeoJsonFeatureReader implements Closeable {
+
+    /**
+     * A single feature.  Instances are reused between calls to readFeature.
+     */
+    public static class Feature {
+        private final Map<String, String> properties = new HashMap<String, String>();
+        private boolean hasGeometry;
+        private boolean hasProperties;
+        private double[] lats = new double[256];
+        private double[] lngs = new double[256];
+        private int pointCount;
+        private int[] partStarts = new int[8];
+        private int partCount;
+        private double minLat, minLng, maxLat, maxLng;
+
+        public boolean hasGeometry() {
+            return hasGeometry;
+        }
+
+        public boolean hasProperties() {
+            return hasProperties;
+        }
+
+        // the number of [lng, lat] positions in the geometry
+        public int getPointCount() {
+            return pointCount;
+        }
+
+        // the latitudes and longitudes of the positions, only the first getPointCount are valid
+        public double[] getLats() {
+            return lats;
+        }
+
+        public double[] getLngs() {
+            return lngs;
+        }
+
+        // the number of lines in the geometry
+        public int getPartCount() {
+            return partCount;
+        }
+
+        // the index of the first position of each line, only the first getPartCount are valid
+        public int[] getPartStarts() {
+            return partStarts;
+        }
+
+        // bounding box of the geometry, all zero if there are no points
+        public double getMinLat() {
+            return minLat;
+        }
+
+        public double getMinLng() {
+            return minLng;
+        }
+
+        public double getMaxLat() {
+            return maxLat;
+        }
+
+        public double getMaxLng() {
+            return maxLng;
+        }
+
+        // the property value as text, json nulls and missing properties are returned as null
+        public String getProperty(String name) {
+            return properties.get(name);
+        }
+
+        public int getIntProperty(String name, int defaultValue) {
+            String value = properties.get(name);
+            if (value == null) return defaultValue;
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                return defaultValue;
+            }
+        }
+
+        private void clear() {
+            properties.clear();
+            hasGeometry = false;
+            hasProperties = false;
+            pointCount = 0;
+            partCount = 0;
+            minLat = minLng = maxLat = maxLng = 0.0;
+        }
+
+        private void addPoint(double lng, double lat) {
+            if (pointCount == 0) {
+                minLat = maxLat = lat;
+                minLng = maxLng = lng;
+            } else {
+                minLat = Math.min(minLat, lat);
+                maxLat = Math.max(maxLat, lat);
+                minLng = Math.min(minLng, lng);
+                maxLng = Math.max(maxLng, lng);
+            }
+            if (pointCount == lats.length) {
+                lats = grow(lats);
+                lngs = grow(lngs);
+            }
+            lats[pointCount] = lat;
+            lngs[pointCount] = lng;
+            ++pointCount;
+        }
+
+        private void startPart(int start) {
+            if (partCount == partStarts.length) {
+                int[] larger = new int[partStarts.length * 2];
+                System.arraycopy(partStarts, 0, larger, 0, partCount);
+                partStarts = larger;
+            }
+            partStarts[partCount++] = start;
+        }
+
+        private static double[] grow(double[] array) {
+            double[] larger = new double[array.length * 2];
+            System.arraycopy(array, 0, larger, 0, array.length);
+            return larger;
+        }
+    }
+
+    private final JsonReader mReader;
+    private boolean mInFeatures = false;
+    private boolean mFinished = false;
+
+    public GeoJsonFeatureReader(InputStream inStream) throws IOException {
+        mReader = new JsonReader(new InputStreamReader(inStream, "UTF-8"));
+    }
+
+    /**
+     * Reads the next feature in the collection into feature.
+     * Returns false once there are no more features.
+     */
+    public boolean readFeature(Feature feature) throws IOException {
+        if (mFinished) return false;
+        if (!mInFeatures) {
+            if (!moveToFeatures()) {
+                mFinished = true;
+                return false;
+            }
+            mInFeatures = true;
+        }
+        if (!mReader.hasNext()) {
+            mReader.endArray();
+            mFinished = true;
+            return false;
+        }
+
+        feature.clear();
+        mReader.beginObject();
+        while (mReader.hasNext()) {
+            String name = mReader.nextName();
+            if (name.equals("geometry") && mReader.peek() == JsonToken.BEGIN_OBJECT) {
+                readGeometry(feature);
+            } else if (name.equals("properties") && mReader.peek() == JsonToken.BEGIN_OBJECT) {
+                readProperties(feature);
+            } else {
+                mReader.skipValue();
+            }
+        }
+        mReader.endObject();
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mReader.close();
+    }
+
+    // private
+
+    // positions the reader at the start of the features array
+    private boolean moveToFeatures() throws IOException {
+        mReader.beginObject();
+        while (mReader.hasNext()) {
+            String name = mReader.nextName();
+            if (name.equals("features") && mReader.peek() == JsonToken.BEGIN_ARRAY) {
+                mReader.beginArray();
+                return true;
+            }
+            mReader.skipValue();
+        }
+        return false;
+    }
+
+    private void readGeometry(Feature feature) throws IOException {
+        mReader.beginObject();
+        while (mReader.hasNext()) {
+            String name = mReader.nextName();
+            if (name.equals("coordinates") && mReader.peek() == JsonToken.BEGIN_ARRAY) {
+                readCoordinates(feature);
+                feature.hasGeometry = true;
+            } else {
+                mReader.skipValue();
+            }
+        }
+        mReader.endObject();
+    }
+
+    private void readProperties(Feature feature) throws IOException {
+        mReader.beginObject();
+        while (mReader.hasNext()) {
+            String name = mReader.nextName();
+            switch (mReader.peek()) {
+                case STRING:
+                case NUMBER:
+                    feature.properties.put(name, mReader.nextString());
+                    break;
+                case BOOLEAN:
+                    feature.properties.put(name, String.valueOf(mReader.nextBoolean()));
+                    break;
+                case NULL:
+                    mReader.nextNull();
+                    feature.properties.put(name, null);
+                    break;
+                default:
+                    mReader.skipValue();
+                    break;
+            }
+        }
+        mReader.endObject();
+        feature.hasProperties = true;
+    }
+
+    // reads a (nested) array of positions, returns true if the array was a position itself
+    private boolean readCoordinates(Feature feature) throws IOException {
+        mReader.beginArray();
+        int index = 0;
+        boolean isPosition = true;
+        boolean isPart = false;
+        double lng = 0.0;
+        double lat = 0.0;
+        while (mReader.hasNext()) {
+            if (mReader.peek() == JsonToken.BEGIN_ARRAY) {
+                isPosition = false;
+                int start = feature.pointCount;
+                // an array of positions is a line
+                if (readCoordinates(feature) && !isPart) {
+                    feature.startPart(start);
+                    isPart = true;
+                }
+            } else {
+                // positions are [lng, lat]
+                if (index == 0) {
+                    lng = mReader.nextDouble();
+                } else if (index == 1) {
+                    lat = mReader.nextDouble();
+                } else {
+                    mReader.skipValue();
+                }
+            }
+            ++index;
+        }
+        mReader.endArray();
+        if (isPosition && index >= 2) {
+            feature.addPoint(lng, lat);
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,207 @@
+package uk.gov.eastlothian.gowalk.data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What happened during an import: for each source file how long it took, how
+ * much was read and how many rows were parsed, inserted, rejected and skipped
+ * (and why), plus how long reading the route geometry took in total.  Skipped
+ * rows are fine but repeat a row already inserted, warnings are for rows that
+ * were kept but are missing something.
+ *
+ * The geometry is only timed as a whole: a single route takes tens of
+ * microseconds, so its time says more about the JIT and thread scheduling
+ * than about the route.
+ *
+ * The stages are filled in by the parser threads and the writer at the same
+ * time so everything that changes them is synchronized.
+ */
+public class ImportReport {
+
+    /**
+     * The numbers for one source file.
+     */
+    public static class Stage {
+        private final String name;
+        private long wallTimeNanos;
+        private long bytesRead;
+        private int rowsParsed;
+        private int rowsInserted;
+        private int rowsRejected;
+        private int rowsSkipped;
+        private final Map<String, Integer> rejections = new LinkedHashMap<String, Integer>();
+        private final Map<String, Integer> skips = new LinkedHashMap<String, Integer>();
+        private final Map<String, Integer> warnings = new LinkedHashMap<String, Integer>();
+
+        private Stage(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public synchronized long getWallTimeMillis() {
+            return wallTimeNanos / 1000000L;
+        }
+
+        public synchronized long getBytesRead() {
+            return bytesRead;
+        }
+
+        public synchronized int getRowsParsed() {
+            return rowsParsed;
+        }
+
+        public synchronized int getRowsInserted() {
+            return rowsInserted;
+        }
+
+        public synchronized int getRowsRejected() {
+            return rowsRejected;
+        }
+
+        public synchronized int getRowsSkipped() {
+            return rowsSkipped;
+        }
+
+        // the number of rows rejected for each reason
+        public synchronized Map<String, Integer> getRejections() {
+            return new LinkedHashMap<String, Integer>(rejections);
+        }
+
+        // the number of rows skipped for each reason
+        public synchronized Map<String, Integer> getSkips() {
+            return new LinkedHashMap<String, Integer>(skips);
+        }
+
+        // the number of rows kept with a warning for each reason
+        public synchronized Map<String, Integer> getWarnings() {
+            return new LinkedHashMap<String, Integer>(warnings);
+        }
+
+        synchronized void addWallTime(long nanos) {
+            wallTimeNanos += nanos;
+        }
+
+        synchronized void addBytesRead(long bytes) {
+            bytesRead += bytes;
+        }
+
+        synchronized void parsed() {
+            ++rowsParsed;
+        }
+
+        synchronized void inserted(int rows) {
+            rowsInserted += rows;
+        }
+
+        synchronized void rejected(String reason) {
+            ++rowsRejected;
+            increment(rejections, reason);
+        }
+
+        synchronized void skipped(String reason) {
+            ++rowsSkipped;
+            increment(skips, reason);
+        }
+
+        synchronized void warning(String reason) {
+            increment(warnings, reason);
+        }
+
+        private static void increment(Map<String, Integer> counts, String reason) {
+            Integer count = counts.get(reason);
+            counts.put(reason, count == null ? 1 : count + 1);
+        }
+
+        @Override
+        public synchronized String toString() {
+            String rtn = name + ": " + getWallTimeMillis() + "ms, " + bytesRead + " bytes, "
+                    + rowsParsed + " parsed, " + rowsInserted + " inserted, " + rowsRejected + " rejected, "
+                    + rowsSkipped + " skipped";
+            for (Map.Entry<String, Integer> rejection : rejections.entrySet()) {
+                rtn += "\n    rejected " + rejection.getValue() + " x " + rejection.getKey();
+            }
+            for (Map.Entry<String, Integer> skip : skips.entrySet()) {
+                rtn += "\n    skipped " + skip.getValue() + " x " + skip.getKey();
+            }
+            for (Map.Entry<String, Integer> warning : warnings.entrySet()) {
+                rtn += "\n    warning " + warning.getValue() + " x " + warning.getKey();
+            }
+            return rtn;
+        }
+    }
+
+    private final Map<String, Stage> mStages = new LinkedHashMap<String, Stage>();
+    // reading the route geometry, summed over every route
+    private long mGeometryNanos;
+    private long mGeometryPoints;
+    private int mGeometryRoutes;
+    private long mWallTimeNanos;
+
+    // the stage for a source file, created the first time it is asked for
+    public synchronized Stage getStage(String name) {
+        Stage stage = mStages.get(name);
+        if (stage == null) {
+            stage = new Stage(name);
+            mStages.put(name, stage);
+        }
+        return stage;
+    }
+
+    public synchronized List<Stage> getStages() {
+        return new ArrayList<Stage>(mStages.values());
+    }
+
+    public synchronized long getGeometryMillis() {
+        return mGeometryNanos / 1000000L;
+    }
+
+    public synchronized long getGeometryPoints() {
+        return mGeometryPoints;
+    }
+
+    // points of route geometry read per second, 0 if none was read
+    public synchronized long getGeometryPointsPerSecond() {
+        return mGeometryNanos > 0 ? mGeometryPoints * 1000000000L / mGeometryNanos : 0;
+    }
+
+    public synchronized long getWallTimeMillis() {
+        return mWallTimeNanos / 1000000L;
+    }
+
+    public synchronized int getRowsRejected() {
+        int rtn = 0;
+        for (Stage stage : mStages.values()) {
+            rtn += stage.getRowsRejected();
+        }
+        return rtn;
+    }
+
+    synchronized void setWallTime(long nanos) {
+        mWallTimeNanos = nanos;
+    }
+
+    synchronized void routeRead(int pointCount, long nanos) {
+        mGeometryNanos += nanos;
+        mGeometryPoints += pointCount;
+        ++mGeometryRoutes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        String rtn = "Import took " + getWallTimeMillis() + "ms";
+        for (Stage stage : mStages.values()) {
+            rtn += "\n  " + stage;
+        }
+        if (mGeometryRoutes > 0) {
+            rtn += "\n  geometry: " + mGeometryRoutes + " routes, " + mGeometryPoints + " points in "
+                    + getGeometryMillis() + "ms, " + getGeometryPointsPerSecond() + " points/s";
+        }
+        return rtn;
+    }
+}
@@ -0,0 +1,78 @@
+package uk.gov.eastlothian.gowalk.data;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The sql of the queries WalksProvider has run, keyed by the kind of query
+ * (its match code) and the shape of the request: projection, selection and
+ * sort order.  The values that change from one query to the next, like ids
+ * and coordinates, are always bound parameters, so every query of the same
+ * shape runs exactly the same sql, which is what lets the database's own
+ * statement cache (as big as this one, see WalksDbHelper) find it again.
+ *
+ * The hit and miss counts are lookups of the sql in this map, a hit saves
+ * building the string, they don't say whether sqlite recompiled it.
+ */
+class QueryTemplates {
+
+    // the most templates kept, the least recently used goes first
+    static final int MAX_TEMPLATES = 64;
+
+    private final Map<String, String> mTemplates = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_TEMPLATES;
+        }
+    };
+    private long mHits = 0;
+    private long mMisses = 0;
+
+    /**
+     * The key of a query, made from its match code and anything else that
+     * changes the sql, e.g. the projection or the number of ids.
+     */
+    static String key(int match, String[] projection, String selection, String sortOrder, Object... shape) {
+        StringBuilder rtn = new StringBuilder().append(match);
+        rtn.append('\n').append(projection == null ? "*" : Arrays.toString(projection));
+        rtn.append('\n').append(selection);
+        rtn.append('\n').append(sortOrder);
+        for (Object part : shape) {
+            rtn.append('\n').append(part);
+        }
+        return rtn.toString();
+    }
+
+    /**
+     * Builds the sql of a template the first time its key is asked for.
+     */
+    interface Builder {
+        String build();
+    }
+
+    // the sql for a key, built and kept on a miss
+    synchronized String get(String key, Builder builder) {
+        String rtn = mTemplates.get(key);
+        if (rtn == null) {
+            ++mMisses;
+            rtn = builder.build();
+            mTemplates.put(key, rtn);
+        } else {
+            ++mHits;
+        }
+        return rtn;
+    }
+
+    synchronized long getTemplateHits() {
+        return mHits;
+    }
+
+    synchronized long getTemplateMisses() {
+        return mMisses;
+    }
+
+    synchronized int size() {
+        return mTemplates.size();
+    }
+}
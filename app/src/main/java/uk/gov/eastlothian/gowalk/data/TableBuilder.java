@@ -11,16 +11,19 @@ public class TableBuilder {
     private String primaryKey;
     private List<Column> columns = new ArrayList<Column>();
     private List<ForeignKey> foreignKeys = new ArrayList<ForeignKey>();
+    private List<Index> indexes = new ArrayList<Index>();
 
     private class Column {
         private String name;
         private String type;
-        private Column(String name, String type) {
+        private boolean nullable;
+        private Column(String name, String type, boolean nullable) {
             this.name = name;
             this.type = type;
+            this.nullable = nullable;
         }
         public String asQuery() {
-            return name + " " + type + " NOT NULL";
+            return name + " " + type + (nullable ? "" : " NOT NULL");
         }
     }
     private class ForeignKey {
@@ -38,6 +41,26 @@ public class TableBuilder {
         }
     }
 
+    private class Index {
+        private String name;
+        private String[] columns;
+        private boolean unique;
+
+        private Index(String name, String[] columns, boolean unique) {
+            this.name = name;
+            this.columns = columns;
+            this.unique = unique;
+        }
+        public String asQuery() {
+            String rtn = "CREATE " + (unique ? "UNIQUE " : "") + "INDEX IF NOT EXISTS "
+                    + name + " ON " + TableBuilder.this.name + "(";
+            for (int idx = 0; idx < columns.length; ++idx) {
+                rtn += (idx > 0 ? ", " : "") + columns[idx];
+            }
+            return rtn + ");";
+        }
+    }
+
     public TableBuilder(String name, String primaryKey) {
         this.name = name;
         addPrimaryKey(primaryKey);
@@ -46,19 +69,67 @@ public class TableBuilder {
     private void addPrimaryKey(String name) {
         primaryKey = name;
     }
-    public TableBuilder addIntegerColumn(String name) {
-        columns.add(new Column(name, "INTEGER"));
+    // a column of any sqlite type, the add...Column methods cover the usual ones
+    public TableBuilder addColumn(String name, String type) {
+        columns.add(new Column(name, type, false));
         return this;
     }
-    public TableBuilder addTextColumn(String name) {
-        columns.add(new Column(name, "TEXT"));
+    // a column that is NULL when the row has no value for it
+    public TableBuilder addNullableColumn(String name, String type) {
+        columns.add(new Column(name, type, true));
         return this;
     }
+    public TableBuilder addIntegerColumn(String name) {
+        return addColumn(name, "INTEGER");
+    }
+    public TableBuilder addRealColumn(String name) {
+        return addColumn(name, "REAL");
+    }
+    public TableBuilder addNullableRealColumn(String name) {
+        return addNullableColumn(name, "REAL");
+    }
+    public TableBuilder addTextColumn(String name) {
+        return addColumn(name, "TEXT");
+    }
+    public TableBuilder addBlobColumn(String name) {
+        return addColumn(name, "BLOB");
+    }
     public TableBuilder addForeignKey(String key, String refTable, String refKey) {
         foreignKeys.add(new ForeignKey(key, refTable, refKey));
         return this;
     }
 
+    public TableBuilder addIndex(String name, String... columns) {
+        indexes.add(new Index(name, columns, false));
+        return this;
+    }
+    // an index that also stops two rows having the same values in its columns
+    public TableBuilder addUniqueIndex(String name, String... columns) {
+        indexes.add(new Index(name, columns, true));
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getIndexNames() {
+        List<String> rtn = new ArrayList<String>();
+        for (Index index : indexes) {
+            rtn.add(index.name);
+        }
+        return rtn;
+    }
+
+    // one CREATE INDEX IF NOT EXISTS for each of the table's indexes
+    public List<String> buildIndexQueries() {
+        List<String> rtn = new ArrayList<String>();
+        for (Index index : indexes) {
+            rtn.add(index.asQuery());
+        }
+        return rtn;
+    }
+
     public String buildQuery() {
         String rtn = "CREATE TABLE " + name + "(";
         rtn += primaryKey + " INTEGER PRIMARY KEY";
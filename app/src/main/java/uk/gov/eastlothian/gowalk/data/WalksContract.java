@@ -32,6 +32,13 @@ public class WalksContract {
     public static final String PATH_WILDLIFE_ON_ROUTE = "wildlife_on_route";
     public static final String PATH_LOG_ENTRY = "log_entry";
 
+    // ContentResolver.call method for how often the provider found a query's sql already built,
+    // returned in a Bundle, these are lookups of sql strings, not sqlite's compiled statements
+    public static final String METHOD_SQL_TEMPLATE_STATS = "sql_template_stats";
+    public static final String KEY_SQL_TEMPLATE_HITS = "sql_template_hits";
+    public static final String KEY_SQL_TEMPLATE_MISSES = "sql_template_misses";
+    public static final String KEY_SQL_TEMPLATES = "sql_templates";
+
     /**
      * Geographical Data
      */
@@ -47,12 +54,50 @@ public class WalksContract {
         // sql database table
         public static final String TABLE_NAME = "route";
         public static final String COLUMN_ROUTE_NUMBER = "route_number";
+        // blob encoded with model.PathCodec
         public static final String COLUMN_COORDINATES = "coordinates";
+        // the coordinates simplified with model.PathSimplifier for the zoomed out map
+        public static final String COLUMN_COORDINATES_LOW = "coordinates_low";
+        public static final String COLUMN_COORDINATES_MEDIUM = "coordinates_medium";
         public static final String COLUMN_PATH_TYPE = "path_type";
         public static final String COLUMN_LENGTH = "length";
         public static final String COLUMN_SURFACE = "surface";
         public static final String COLUMN_DESCRIPTION = "description";
         public static final String COLUMN_PRIMARY_AREA = "primary_area";
+        // bounding box of the coordinates, worked out when walks.db is built
+        public static final String COLUMN_MIN_LAT = "min_lat";
+        public static final String COLUMN_MIN_LNG = "min_lng";
+        public static final String COLUMN_MAX_LAT = "max_lat";
+        public static final String COLUMN_MAX_LNG = "max_lng";
+        // summary of the coordinates, also worked out when walks.db is built
+        public static final String COLUMN_CENTRE_LAT = "centre_lat";    // centre weighted by length
+        public static final String COLUMN_CENTRE_LNG = "centre_lng";
+        public static final String COLUMN_START_LAT = "start_lat";
+        public static final String COLUMN_START_LNG = "start_lng";
+        public static final String COLUMN_END_LAT = "end_lat";
+        public static final String COLUMN_END_LNG = "end_lng";
+        public static final String COLUMN_POINT_COUNT = "point_count";
+        public static final String COLUMN_MEASURED_LENGTH = "measured_length"; // in metres, from the coordinates
+
+        // query parameters of the routes in bounds uri
+        public static final String PARAM_MIN_LAT = "min_lat";
+        public static final String PARAM_MIN_LNG = "min_lng";
+        public static final String PARAM_MAX_LAT = "max_lat";
+        public static final String PARAM_MAX_LNG = "max_lng";
+        // query parameters of the nearest routes uri, max_distance in metres is optional
+        public static final String PARAM_LAT = "lat";
+        public static final String PARAM_LNG = "lng";
+        public static final String PARAM_LIMIT = "limit";
+        public static final String PARAM_MAX_DISTANCE = "max_distance";
+        // added to the nearest routes, metres from the point to the nearest part of the route
+        public static final String COLUMN_DISTANCE = "distance";
+        // query parameter of the route detail uri, the area the route is shown in
+        public static final String PARAM_AREA = "area";
+        // added to the rows of the route detail uri, which of the sections below the row is in
+        public static final String COLUMN_DETAIL_SECTION = "detail_section";
+        public static final int DETAIL_SECTION_ROUTE = 0;
+        public static final int DETAIL_SECTION_AREA = 1;
+        public static final int DETAIL_SECTION_WILDLIFE = 2;
 
         // query uris builder helpers
         public static Uri buildRouteUri(long id) {
@@ -64,6 +109,28 @@ public class WalksContract {
         public static Uri buildWildlifeOnRouteUri(long id) {
             return buildRouteUri(id).buildUpon().appendPath("wildlife").build();
         }
+        // the route, the area and the route's wildlife in one cursor, see model.RouteDetail
+        public static Uri buildRouteDetailUri(long id, long areaId) {
+            return buildRouteUri(id).buildUpon().appendPath("detail")
+                    .appendQueryParameter(PARAM_AREA, Long.toString(areaId))
+                    .build();
+        }
+        // the routes whose bounding box overlaps the given box
+        public static Uri buildRoutesInBoundsUri(double minLat, double minLng, double maxLat, double maxLng) {
+            return CONTENT_URI.buildUpon().appendPath("bbox")
+                    .appendQueryParameter(PARAM_MIN_LAT, Double.toString(minLat))
+                    .appendQueryParameter(PARAM_MIN_LNG, Double.toString(minLng))
+                    .appendQueryParameter(PARAM_MAX_LAT, Double.toString(maxLat))
+                    .appendQueryParameter(PARAM_MAX_LNG, Double.toString(maxLng))
+                    .build();
+        }
+        public static Uri buildNearestRoutesUri(double lat, double lng, int limit) {
+            return CONTENT_URI.buildUpon().appendPath("near")
+                    .appendQueryParameter(PARAM_LAT, Double.toString(lat))
+                    .appendQueryParameter(PARAM_LNG, Double.toString(lng))
+                    .appendQueryParameter(PARAM_LIMIT, Integer.toString(limit))
+                    .build();
+        }
         public static String getRouteFromUri(Uri uri) {
             return uri.getPathSegments().get(1);
         }
@@ -181,14 +248,41 @@ public class WalksContract {
         public static final String COLUMN_WILDLIFE_KEY = "wildlife_id";
         public static final String COLUMN_LAT = "lat";
         public static final String COLUMN_LNG = "lng";
+        // model.GeoHash of lat and lng, filled in by the content provider
+        public static final String COLUMN_GEOHASH = "geohash";
         public static final String COLUMN_DATATIME = "datetime";
         public static final String COLUMN_WEATHER = "weather";
         public static final String COLUMN_IMAGE = "image";
 
+        // query parameters of the log entries in bounds uri
+        public static final String PARAM_MIN_LAT = "min_lat";
+        public static final String PARAM_MIN_LNG = "min_lng";
+        public static final String PARAM_MAX_LAT = "max_lat";
+        public static final String PARAM_MAX_LNG = "max_lng";
+        // query parameters of the log entries near a point uri, the radius is in metres
+        public static final String PARAM_LAT = "lat";
+        public static final String PARAM_LNG = "lng";
+        public static final String PARAM_RADIUS = "radius";
+
         // query uris builder helpers
         public static Uri buildLogEntrysUri(long id) {
             return ContentUris.withAppendedId(CONTENT_URI, id);
         }
+        public static Uri buildLogEntriesInBoundsUri(double minLat, double minLng, double maxLat, double maxLng) {
+            return CONTENT_URI.buildUpon().appendPath("bbox")
+                    .appendQueryParameter(PARAM_MIN_LAT, Double.toString(minLat))
+                    .appendQueryParameter(PARAM_MIN_LNG, Double.toString(minLng))
+                    .appendQueryParameter(PARAM_MAX_LAT, Double.toString(maxLat))
+                    .appendQueryParameter(PARAM_MAX_LNG, Double.toString(maxLng))
+                    .build();
+        }
+        public static Uri buildLogEntriesNearUri(double lat, double lng, double radiusMetres) {
+            return CONTENT_URI.buildUpon().appendPath("near")
+                    .appendQueryParameter(PARAM_LAT, Double.toString(lat))
+                    .appendQueryParameter(PARAM_LNG, Double.toString(lng))
+                    .appendQueryParameter(PARAM_RADIUS, Double.toString(radiusMetres))
+                    .build();
+        }
         public static Uri buildWildlifeLogsUri() {
             return CONTENT_URI.buildUpon().appendPath("wildlife").build();
         }
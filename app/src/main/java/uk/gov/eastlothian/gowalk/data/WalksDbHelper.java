@@ -3,40 +3,69 @@ package uk.gov.eastlothian.gowalk.data;
 
 import android.content.Context;
 import android.content.res.AssetManager;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.text.TextUtils;
 import android.util.Log;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.sql.SQLException;
-
-import uk.gov.eastlothian.gowalk.data.WalksContract.RouteEntry;
-import uk.gov.eastlothian.gowalk.data.WalksContract.AreaEntry;
-import uk.gov.eastlothian.gowalk.data.WalksContract.RouteInAreaEntry;
-import uk.gov.eastlothian.gowalk.data.WalksContract.WildlifeEntry;
-import uk.gov.eastlothian.gowalk.data.WalksContract.WildlifeOnRouteEntry;
-import uk.gov.eastlothian.gowalk.data.WalksContract.LogEntry;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 public class WalksDbHelper extends SQLiteOpenHelper {
 
     private static final String LOG_TAG = WalksDbHelper.class.getSimpleName();
 
     public static final String DB_NAME = "walks.db";
-    private static final int DB_VERSION = 1;
+    // bumped whenever the reference data in the prebuilt database changes
+    private static final int DB_VERSION = WalksSchema.VERSION;
     private static File DATABASE_FILE;
 
+    // the prebuilt database may also be shipped gzipped
+    private static final String COMPRESSED_DB_NAME = DB_NAME + ".gz";
+    // written by the walksdb module alongside the database
+    private static final String MANIFEST_NAME = "walks_db_manifest.json";
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    // page cache of the connection that writes, in KiB (negative for sqlite), the whole database fits
+    private static final int CACHE_SIZE_KB = 2048;
+    // bytes of the database file read through memory mapping where sqlite supports it
+    private static final long MMAP_SIZE = 4 * 1024 * 1024;
+
     private boolean mInvalidDatabaseFile = false;
+    // the version of the installed database before onUpgrade, -1 if it is up to date
+    private int mOutOfDateVersion = -1;
+    // whether the route_bbox r*tree is there to query, and whether sqlite can't make one
+    private volatile boolean mHasRouteBBox = false;
+    private volatile boolean mNoRTreeModule = false;
     private Context mContext;
 
     public WalksDbHelper(Context context) {
         super(context, DB_NAME, null, DB_VERSION);
         this.mContext = context;
         DATABASE_FILE = context.getDatabasePath(DB_NAME);
+        // readers get their own connections and never wait for a writer
+        setWriteAheadLoggingEnabled(true);
+
+        // install the prebuilt database before sqlite gets the chance to create an empty one
+        if (!DATABASE_FILE.exists()) {
+            copyDatabase();
+        }
 
         SQLiteDatabase db;
 
@@ -44,8 +73,15 @@ public class WalksDbHelper extends SQLiteOpenHelper {
         if (db != null) {
             db.close();
         }
+        if (mOutOfDateVersion != -1 && !mInvalidDatabaseFile) {
+            upgradeReferenceData();
+        }
         if (mInvalidDatabaseFile) {
-            copyDatabase();
+            if (!copyDatabase()) {
+                // don't leave an empty database behind, try again next time instead
+                close();
+                context.deleteDatabase(DB_NAME);
+            }
         }
 
         if (db != null && db.isOpen()) {
@@ -53,49 +89,395 @@ public class WalksDbHelper extends SQLiteOpenHelper {
         }
     }
 
-    public void copyDatabase() {
-        AssetManager assetManager = mContext.getResources().getAssets();
-        InputStream in = null;
-        OutputStream out = null;
+    /**
+     * Installs the prebuilt database from the assets.
+     *
+     * The asset is streamed into a temporary file and checked against the
+     * checksum in the manifest before it is renamed over the database file,
+     * so the live database is never left half written.
+     * Returns true if the database was installed.
+     */
+    public boolean copyDatabase() {
+        long start = SystemClock.elapsedRealtime();
+        File tmpFile = new File(DATABASE_FILE.getPath() + ".tmp");
         try {
-            in = assetManager.open(DB_NAME);
-            out = new FileOutputStream(DATABASE_FILE);
-            byte[] buffer = new byte[1024];
-            int read = 0;
-            while ((read = in.read(buffer)) != -1) {
-                out.write(buffer, 0, read);
+            File dir = DATABASE_FILE.getParentFile();
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("Cannot create " + dir);
+            }
+
+            copyVerifiedAsset(tmpFile);
+            setDatabaseVersion(tmpFile);
+
+            // a journal or log left over from the old database must not be applied to the new one
+            deleteJournals(DATABASE_FILE);
+            if (!tmpFile.renameTo(DATABASE_FILE)) {
+                throw new IOException("Cannot rename " + tmpFile + " to " + DATABASE_FILE);
             }
         } catch (IOException e) {
-        } finally {
-            if (in != null) {
+            Log.e(LOG_TAG, "Error while installing " + DB_NAME, e);
+            tmpFile.delete();
+            return false;
+        }
+        mInvalidDatabaseFile = false;
+        Log.i(LOG_TAG, "Installed " + DB_NAME + " in " + (SystemClock.elapsedRealtime() - start) + "ms");
+        return true;
+    }
+
+    /*
+     * Brings the reference data (routes, areas and wildlife) up to date with the
+     * prebuilt database without losing the user's log book.
+     *
+     * The new database is attached and each reference table is diffed against
+     * it, so only the rows that changed are written.  Rows are matched on their
+     * key in WalksSchema.REFERENCE_KEYS rather than their _id, which is just the
+     * row's place in the source data: a row keeps the _id it has here, so the log
+     * entries still point at the same wildlife, and a new row gets an _id after
+     * the rest.  A row that has gone from the prebuilt database is kept if the
+     * user's data (WalksSchema.USER_REFERENCES) still refers to it, so no
+     * sighting drops out of the log book.  The junction tables are diffed with
+     * their ids mapped the same way.  A table whose schema has changed is replaced outright, still with the
+     * mapped ids.  Then the WalksMigrations since the old
+     * version are run for the user's tables.  Everything happens in one
+     * transaction, if it fails the old version is put back so the upgrade is
+     * tried again.
+     */
+    private void upgradeReferenceData() {
+        long start = SystemClock.elapsedRealtime();
+        File tmpFile = new File(DATABASE_FILE.getPath() + ".tmp");
+        SQLiteDatabase db = null;
+        int changes = 0;
+        int migrations = 0;
+        try {
+            db = getWritableDatabase();
+            copyVerifiedAsset(tmpFile);
+
+            // attach has to happen outside of a transaction
+            db.execSQL("ATTACH DATABASE ? AS reference", new Object[]{ tmpFile.getAbsolutePath() });
+            try {
+                db.beginTransaction();
                 try {
-                    in.close();
-                } catch (IOException e) {
+                    for (String[] key : WalksSchema.REFERENCE_KEYS) {
+                        changes += upgradeReferenceTable(db, key[0], key[1]);
+                    }
+                    for (String[] link : WalksSchema.REFERENCE_LINKS) {
+                        changes += upgradeReferenceLinks(db, link[0], link[1], link[2], link[3], link[4]);
+                    }
+                    for (String[] key : WalksSchema.REFERENCE_KEYS) {
+                        db.execSQL("DROP TABLE " + idMapTable(key[0]));
+                    }
+                    migrations = WalksMigrations.migrate(db, mOutOfDateVersion);
+                    // a replaced table loses its indexes
+                    WalksMigrations.createIndexes(db);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
                 }
+            } finally {
+                db.execSQL("DETACH DATABASE reference");
             }
+            mOutOfDateVersion = -1;
+            Log.i(LOG_TAG, "Upgraded reference data, " + changes + " rows changed and "
+                    + migrations + " migrations run in " + (SystemClock.elapsedRealtime() - start) + "ms");
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error while upgrading the reference data", e);
+        } catch (SQLiteException e) {
+            Log.e(LOG_TAG, "Error while upgrading the reference data", e);
+        } finally {
+            if (db != null && mOutOfDateVersion != -1) {
+                db.setVersion(mOutOfDateVersion);
+            }
+            close();
+            tmpFile.delete();
+            new File(tmpFile.getPath() + "-journal").delete();
+        }
+    }
+
+    /*
+     * Diffs a reference table against the prebuilt database, matching rows on the
+     * key column, the lowest _id wins if two rows here share a key.  Leaves the mapping from the prebuilt database's ids to the ids
+     * here in a temporary table for the junction tables.  Returns the number of
+     * rows changed.
+     */
+    private int upgradeReferenceTable(SQLiteDatabase db, String table, String key) {
+        String schema = tableSchema(db, "main", table);
+        String newSchema = tableSchema(db, "reference", table);
+        if (newSchema == null) {
+            throw new SQLiteException("No " + table + " table in the prebuilt database");
+        }
+
+        // the rows with the same key keep their id, the rest get ids after the ones here
+        String idMap = idMapTable(table);
+        db.execSQL("DROP TABLE IF EXISTS " + idMap);
+        db.execSQL("CREATE TABLE " + idMap + " (ref_id INTEGER PRIMARY KEY, main_id INTEGER)");
+        long nextId = 1;
+        if (schema != null) {
+            // if two rows here share a key the first one wins
+            db.execSQL("INSERT INTO " + idMap + " SELECT _id, (SELECT MIN(main." + table + "._id) FROM main."
+                    + table + " WHERE main." + table + "." + key + " = reference." + table + "." + key + ") "
+                    + "FROM reference." + table);
+            nextId = DatabaseUtils.longForQuery(db, "SELECT IFNULL(MAX(_id), 0) + 1 FROM main." + table, null);
+        } else {
+            db.execSQL("INSERT INTO " + idMap + " SELECT _id, NULL FROM reference." + table);
+        }
+        SQLiteStatement assignId = db.compileStatement("UPDATE " + idMap + " SET main_id = ? WHERE ref_id = ?");
+        Cursor cursor = db.rawQuery("SELECT ref_id FROM " + idMap + " WHERE main_id IS NULL ORDER BY ref_id", null);
+        try {
+            while (cursor.moveToNext()) {
+                assignId.bindLong(1, nextId++);
+                assignId.bindLong(2, cursor.getLong(0));
+                assignId.execute();
+            }
+        } finally {
+            cursor.close();
+            assignId.close();
+        }
+
+        // the prebuilt rows with the ids from here
+        StringBuilder rows = new StringBuilder("SELECT " + idMap + ".main_id");
+        for (String column : columnNames(db, "reference", table)) {
+            if (!"_id".equals(column)) {
+                rows.append(", reference.").append(table).append('.').append(column);
+            }
+        }
+        rows.append(" FROM reference.").append(table)
+                .append(" INNER JOIN ").append(idMap).append(" ON ").append(idMap).append(".ref_id = reference.")
+                .append(table).append("._id");
+
+        // the rows that have gone from the prebuilt database, less the ones the user's data still uses
+        String gone = "_id NOT IN (SELECT main_id FROM " + idMap + ")";
+        String used = usedByUserData(db, table);
+
+        int changes = 0;
+        if (newSchema.equals(schema)) {
+            // remove the rows that have gone and write the rows that are new or changed
+            changes += executeUpdateDelete(db, "DELETE FROM main." + table + " WHERE " + gone
+                    + (used != null ? " AND NOT " + used : ""));
+            changes += executeUpdateDelete(db, "INSERT OR REPLACE INTO main." + table + " "
+                    + rows + " EXCEPT SELECT * FROM main." + table);
+        } else {
+            // the rows that are still used are put back with the columns both schemas have
+            String kept = "temp." + table + "_kept";
+            if (schema != null && used != null) {
+                db.execSQL("DROP TABLE IF EXISTS " + kept);
+                db.execSQL("CREATE TABLE " + kept + " AS SELECT * FROM main." + table
+                        + " WHERE " + gone + " AND " + used);
+            }
+            db.execSQL("DROP TABLE IF EXISTS main." + table);
+            db.execSQL(newSchema);
+            changes += executeUpdateDelete(db, "INSERT OR REPLACE INTO main." + table + " " + rows);
+            if (schema != null && used != null) {
+                List<String> columns = columnNames(db, "main", table);
+                columns.retainAll(columnNames(db, "temp", table + "_kept"));
+                String columnList = TextUtils.join(", ", columns);
+                changes += executeUpdateDelete(db, "INSERT INTO main." + table + " (" + columnList + ") "
+                        + "SELECT " + columnList + " FROM " + kept);
+                db.execSQL("DROP TABLE " + kept);
+            }
+        }
+        return changes;
+    }
+
+    /*
+     * Diffs a junction table against the prebuilt database with both of its ids
+     * mapped to the ids here.  A link keeps its row, so only the links that are
+     * new or gone are written.  Returns the number of rows changed.
+     */
+    private int upgradeReferenceLinks(SQLiteDatabase db, String table, String column1, String table1,
+                                      String column2, String table2) {
+        String schema = tableSchema(db, "main", table);
+        String newSchema = tableSchema(db, "reference", table);
+        if (newSchema == null) {
+            throw new SQLiteException("No " + table + " table in the prebuilt database");
+        }
+        String links = "SELECT DISTINCT map1.main_id AS " + column1 + ", map2.main_id AS " + column2
+                + " FROM reference." + table
+                + " INNER JOIN " + idMapTable(table1) + " AS map1 ON map1.ref_id = reference." + table + "." + column1
+                + " INNER JOIN " + idMapTable(table2) + " AS map2 ON map2.ref_id = reference." + table + "." + column2;
+
+        int changes = 0;
+        if (newSchema.equals(schema)) {
+            String newLinks = "temp." + table + "_links";
+            db.execSQL("DROP TABLE IF EXISTS " + newLinks);
+            db.execSQL("CREATE TABLE " + newLinks + " AS " + links);
+            changes += executeUpdateDelete(db, "DELETE FROM main." + table + " WHERE NOT EXISTS "
+                    + "(SELECT 1 FROM " + newLinks + " AS link WHERE link." + column1 + " = main." + table + "." + column1
+                    + " AND link." + column2 + " = main." + table + "." + column2 + ")");
+            changes += executeUpdateDelete(db, "INSERT INTO main." + table + " (" + column1 + ", " + column2 + ") "
+                    + "SELECT " + column1 + ", " + column2 + " FROM " + newLinks
+                    + " EXCEPT SELECT " + column1 + ", " + column2 + " FROM main." + table);
+            db.execSQL("DROP TABLE " + newLinks);
+        } else {
+            db.execSQL("DROP TABLE IF EXISTS main." + table);
+            db.execSQL(newSchema);
+            changes += executeUpdateDelete(db, "INSERT INTO main." + table + " (" + column1 + ", " + column2 + ") "
+                    + links);
+        }
+        return changes;
+    }
+
+    /*
+     * A condition on a row of main.table that is true when one of the user's tables
+     * in WalksSchema.USER_REFERENCES refers to it, or null if none of them can.
+     */
+    private static String usedByUserData(SQLiteDatabase db, String table) {
+        List<String> conditions = new ArrayList<String>();
+        for (String[] reference : WalksSchema.USER_REFERENCES) {
+            if (reference[2].equals(table) && tableSchema(db, "main", reference[0]) != null) {
+                conditions.add("EXISTS (SELECT 1 FROM main." + reference[0] + " WHERE main." + reference[0]
+                        + "." + reference[1] + " = main." + table + "._id)");
+            }
+        }
+        return conditions.isEmpty() ? null : "(" + TextUtils.join(" OR ", conditions) + ")";
+    }
+
+    // the temporary table mapping the prebuilt database's ids of a table to the ids here
+    private static String idMapTable(String table) {
+        return "temp." + table + "_id_map";
+    }
+
+    private static List<String> columnNames(SQLiteDatabase db, String database, String table) {
+        List<String> rtn = new ArrayList<String>();
+        Cursor cursor = db.rawQuery("PRAGMA " + database + ".table_info(" + table + ")", null);
+        try {
+            int nameIndex = cursor.getColumnIndex("name");
+            while (cursor.moveToNext()) {
+                rtn.add(cursor.getString(nameIndex));
+            }
+        } finally {
+            cursor.close();
+        }
+        return rtn;
+    }
+
+    private static void deleteJournals(File databaseFile) {
+        for (String suffix : new String[]{ "-journal", "-wal", "-shm" }) {
+            new File(databaseFile.getPath() + suffix).delete();
+        }
+    }
+
+    private static String tableSchema(SQLiteDatabase db, String database, String table) {
+        Cursor cursor = db.rawQuery("SELECT sql FROM " + database + ".sqlite_master "
+                + "WHERE type = 'table' AND name = ?", new String[]{ table });
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static int executeUpdateDelete(SQLiteDatabase db, String sql) {
+        SQLiteStatement statement = db.compileStatement(sql);
+        try {
+            return statement.executeUpdateDelete();
+        } finally {
+            statement.close();
+        }
+    }
+
+    // copies the database asset to file and checks it against the manifest
+    private void copyVerifiedAsset(File file) throws IOException {
+        String checksum = copyAsset(file);
+        String expected = readManifestChecksum();
+        if (expected != null && !expected.equalsIgnoreCase(checksum)) {
+            file.delete();
+            throw new IOException("Checksum mismatch, expected " + expected + " but was " + checksum);
+        }
+    }
+
+    // copies the database asset to file and returns the sha-256 of what was written
+    private String copyAsset(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e.toString());
+        }
+        InputStream in = openDatabaseAsset();
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+            }
+            // make sure it is on disk before it replaces the database
+            out.getFD().sync();
+        } finally {
+            in.close();
             if (out != null) {
-                try {
-                    out.close();
-                } catch (IOException e) {
-                }
+                out.close();
             }
         }
-        setDatabaseVersion();
-        mInvalidDatabaseFile = false;
+        return toHex(digest.digest());
+    }
+
+    private InputStream openDatabaseAsset() throws IOException {
+        AssetManager assetManager = mContext.getResources().getAssets();
+        try {
+            return new GZIPInputStream(assetManager.open(COMPRESSED_DB_NAME), COPY_BUFFER_SIZE);
+        } catch (FileNotFoundException e) {
+            return assetManager.open(DB_NAME);
+        }
+    }
+
+    // the expected sha-256 of the database or null if there is no manifest
+    private String readManifestChecksum() throws IOException {
+        InputStream in;
+        try {
+            in = mContext.getResources().getAssets().open(MANIFEST_NAME);
+        } catch (FileNotFoundException e) {
+            Log.w(LOG_TAG, "No " + MANIFEST_NAME + ", installing " + DB_NAME + " without checking it");
+            return null;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return new JSONObject(bytes.toString("UTF-8")).getString("sha256");
+        } catch (JSONException e) {
+            throw new IOException("Invalid " + MANIFEST_NAME + ": " + e);
+        } finally {
+            in.close();
+        }
     }
 
-    private void setDatabaseVersion() {
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+            hex.append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private void setDatabaseVersion(File file) throws IOException {
         SQLiteDatabase db = null;
         try {
-            db = SQLiteDatabase.openDatabase(DATABASE_FILE.getAbsolutePath(), null,
+            db = SQLiteDatabase.openDatabase(file.getAbsolutePath(), null,
                     SQLiteDatabase.OPEN_READWRITE);
             db.execSQL("PRAGMA user_version = " + DB_VERSION);
-        } catch (SQLiteException e ) {
+        } catch (SQLiteException e) {
+            throw new IOException("Cannot open the installed database: " + e);
         } finally {
             if (db != null && db.isOpen()) {
                 db.close();
             }
         }
+        new File(file.getPath() + "-journal").delete();
+    }
+
+    /**
+     * True if the route bounding boxes can be queried through the route_bbox
+     * r*tree, otherwise the bounding box columns of the route table have to be used.
+     */
+    public boolean hasRouteBBox() {
+        return mHasRouteBBox;
     }
 
     @Override
@@ -103,9 +485,115 @@ public class WalksDbHelper extends SQLiteOpenHelper {
         mInvalidDatabaseFile = true;
     }
 
+    /*
+     * Write ahead logging is turned on for the connection before this is called.
+     * The pragmas apply to the connection that writes, Android configures the
+     * pool of reading connections itself.  With the log, synchronous NORMAL only
+     * risks the last commits on power loss, never a corrupt database.  The
+     * upgrade attaches the prebuilt database, which turns the log off until
+     * the database is next opened.
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase database) {
+        super.onConfigure(database);
+        // room for a compiled statement for every query template WalksProvider keeps
+        database.setMaxSqlCacheSize(QueryTemplates.MAX_TEMPLATES);
+        if (!database.isReadOnly()) {
+            database.execSQL("PRAGMA synchronous = NORMAL");
+            database.execSQL("PRAGMA cache_size = -" + CACHE_SIZE_KB);
+            // answers with the size it settled on, sqlite before 3.7.17 ignores it
+            Cursor cursor = database.rawQuery("PRAGMA mmap_size = " + MMAP_SIZE, null);
+            try {
+                cursor.moveToFirst();
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase database) {
+        super.onOpen(database);
+        // an out of date database gets these once its reference data is upgraded
+        if (!database.isReadOnly() && mOutOfDateVersion == -1) {
+            createIndexes(database);
+            createRouteBBox(database);
+        }
+    }
+
+    /*
+     * Makes sure the indexes in WalksSchema are there, whatever the prebuilt
+     * database came with.  Nothing happens when they all are.  An out of date
+     * database gets them when it is upgraded instead.
+     */
+    private void createIndexes(SQLiteDatabase db) {
+        if (tableSchema(db, "main", WalksContract.RouteEntry.TABLE_NAME) == null) {
+            return;
+        }
+        try {
+            List<String> created = WalksMigrations.createIndexes(db);
+            if (!created.isEmpty()) {
+                Log.i(LOG_TAG, "Created missing indexes " + created);
+            }
+        } catch (SQLiteException e) {
+            Log.w(LOG_TAG, "Cannot create the indexes", e);
+        }
+    }
+
+    /*
+     * Makes the route_bbox r*tree and the triggers that keep it in step with the
+     * route table.  The triggers go when the route table is replaced by an upgrade,
+     * so the r*tree is filled again whenever they are missing.  Only a failure
+     * to create the r*tree itself means sqlite has no rtree module.
+     */
+    private void createRouteBBox(SQLiteDatabase db) {
+        if (mNoRTreeModule || tableSchema(db, "main", WalksContract.RouteEntry.TABLE_NAME) == null) {
+            return;
+        }
+        Cursor cursor = db.rawQuery("SELECT count(*) FROM sqlite_master WHERE type = 'trigger' "
+                + "AND name LIKE 'route_bbox_%'", null);
+        try {
+            if (cursor.moveToFirst() && cursor.getInt(0) == 3) {
+                mHasRouteBBox = true;
+                return;
+            }
+        } finally {
+            cursor.close();
+        }
+
+        try {
+            db.execSQL(WalksSchema.CREATE_ROUTE_BBOX[0]);
+        } catch (SQLiteException e) {
+            // this sqlite was built without the rtree module, don't try again
+            Log.w(LOG_TAG, "No " + WalksSchema.ROUTE_BBOX_TABLE + ", using the route table instead", e);
+            mNoRTreeModule = true;
+            mHasRouteBBox = false;
+            return;
+        }
+
+        long start = SystemClock.elapsedRealtime();
+        db.beginTransaction();
+        try {
+            for (int idx = 1; idx < WalksSchema.CREATE_ROUTE_BBOX.length; ++idx) {
+                db.execSQL(WalksSchema.CREATE_ROUTE_BBOX[idx]);
+            }
+            db.setTransactionSuccessful();
+            mHasRouteBBox = true;
+            Log.i(LOG_TAG, "Built " + WalksSchema.ROUTE_BBOX_TABLE + " in "
+                    + (SystemClock.elapsedRealtime() - start) + "ms");
+        } catch (SQLiteException e) {
+            // the module is there, so this is tried again the next time the database is opened
+            Log.w(LOG_TAG, "Cannot fill " + WalksSchema.ROUTE_BBOX_TABLE + ", using the route table instead", e);
+            mHasRouteBBox = false;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
     @Override
     public void onUpgrade(SQLiteDatabase database, int oldVersion, int newVersion) {
-        mInvalidDatabaseFile = true;
+        // the reference data is upgraded once the database is open, keeping the log book
+        mOutOfDateVersion = oldVersion;
     }
 }
 
@@ -0,0 +1,656 @@
+package uk.gov.eastlothian.gowalk.data;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import uk.gov.eastlothian.gowalk.model.PathCodec;
+import uk.gov.eastlothian.gowalk.model.PathMeasure;
+import uk.gov.eastlothian.gowalk.model.PathSimplifier;
+
+/**
+ * The import pipeline that turns the source data (the csv and json files in
+ * walksdb/src/data) into the rows of the walks database.
+ *
+ * The pipeline only parses and links the data, the rows are written through
+ * a Target.  This keeps it free of the Android framework so the same code
+ * builds walks.db at compile time (see the walksdb module) and can still be
+ * run on a device through the content provider by the tests.
+ *
+ * The source files are parsed at the same time on a small thread pool.  The
+ * parsed rows are handed to the thread that called run(), which is the only
+ * one that writes to the Target, so the target doesn't need to be thread safe.
+ * Routes are streamed to the writer through a bounded queue as they are
+ * parsed, everything that refers to a route waits until all the routes are in.
+ *
+ * run() returns an ImportReport with the timings and row counts of each
+ * source file and the reasons any rows were skipped.
+ *
+ * Created by davidmorrison on 26/11/14.
+ */
+public class WalksImporter {
+
+    // source files
+    public static final String ROUTE_DESCRIPTIONS_FILE = "Routes.csv";
+    public static final String ROUTES_FILE = "core_paths.json";
+    public static final String WILDLIFE_FILE = "Wildlife.csv";
+    public static final String WILDLIFE_DESCRIPTIONS_FILE = "wildlife_descriptions.json";
+    public static final String ROUTES_IN_AREAS_FILE = "RoutesInAreas.csv";
+
+    // number of routes parsed before they are handed to the target
+    private static final int ROUTE_INSERT_BATCH_SIZE = 50;
+    // number of batches of routes the parser can get ahead of the writer
+    private static final int ROUTE_QUEUE_SIZE = 4;
+    // the most threads used to parse the source files, there are only four parsers
+    private static final int MAX_PARSER_THREADS = 4;
+
+    // the report stage for the time spent writing to the target
+    public static final String WRITER_STAGE = "writer";
+
+    // marks the end of the routes in the queue
+    private static final List<RouteRow> END_OF_ROUTES = new ArrayList<RouteRow>(0);
+
+    /**
+     * Opens the source files by name.
+     */
+    public interface Source {
+        InputStream open(String fileName) throws IOException;
+    }
+
+    /**
+     * Somewhere to write the imported rows.  Methods are called in dependency
+     * order, all the routes are inserted before anything that refers to them.
+     */
+    public interface Target {
+        void insertRoutes(List<RouteRow> routes) throws IOException;
+
+        // exact route number to route id map of the inserted routes, the first route inserted wins
+        Map<Integer, Long> loadRouteIds() throws IOException;
+
+        long insertWildlife(WildlifeRow wildlife) throws IOException;
+
+        // each link is { wildlife id, route id }
+        void insertWildlifeOnRoutes(List<long[]> links) throws IOException;
+
+        long insertArea(String name) throws IOException;
+
+        // each link is { route id, area id }
+        void insertRoutesInAreas(List<long[]> links) throws IOException;
+
+        // route id to the id of its primary area
+        void setPrimaryAreas(Map<Long, Long> primaryAreas) throws IOException;
+    }
+
+    /**
+     * A row of the route table.
+     */
+    public static class RouteRow {
+        public int routeNumber = -1;
+        // encoded with PathCodec
+        public byte[] coordinates;
+        // simplified with PathSimplifier
+        public byte[] coordinatesLow;
+        public byte[] coordinatesMedium;
+        public String pathType = "unknown";
+        public int length = 0;
+        public String surface = "unknown";
+        public String description = "no description available";
+        // null for a route without any geometry
+        public Double minLat, minLng, maxLat, maxLng;
+        public Double centreLat, centreLng;
+        public Double startLat, startLng, endLat, endLng;
+        public int pointCount;
+        public double measuredLength;
+    }
+
+    /**
+     * A row of the wildlife table.
+     */
+    public static class WildlifeRow {
+        public String name;
+        public String category;
+        public String description;
+        public String whenSeen;
+        public String imageName = "no_image";
+    }
+
+    /*
+     * A row of the wildlife table and the numbers of the routes it is found on.
+     */
+    private static class ParsedWildlife {
+        private final WildlifeRow wildlife = new WildlifeRow();
+        private final List<Integer> routeNumbers = new ArrayList<Integer>();
+    }
+
+    /*
+     * A route listed against an area.
+     */
+    private static class ParsedRouteInArea {
+        private final int routeNumber;
+        private final String areaName;
+
+        private ParsedRouteInArea(int routeNumber, String areaName) {
+            this.routeNumber = routeNumber;
+            this.areaName = areaName;
+        }
+    }
+
+    /*
+     * Counts the bytes read from a source file into its report stage.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private final ImportReport.Stage mStage;
+
+        private CountingInputStream(InputStream in, ImportReport.Stage stage) {
+            super(in);
+            mStage = stage;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int rtn = super.read();
+            if (rtn != -1) {
+                mStage.addBytesRead(1);
+            }
+            return rtn;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int rtn = super.read(buffer, offset, count);
+            if (rtn > 0) {
+                mStage.addBytesRead(rtn);
+            }
+            return rtn;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long rtn = super.skip(count);
+            mStage.addBytesRead(rtn);
+            return rtn;
+        }
+    }
+
+    /*
+     * Parses one source file, timing it and counting what is read into the file's report stage.
+     */
+    private abstract class ParseTask<T> implements Callable<T> {
+        private final String mFileName;
+
+        private ParseTask(String fileName) {
+            mFileName = fileName;
+        }
+
+        @Override
+        public T call() throws Exception {
+            ImportReport.Stage stage = mReport.getStage(mFileName);
+            long start = System.nanoTime();
+            try {
+                return parse(new CountingInputStream(mSource.open(mFileName), stage), stage);
+            } finally {
+                stage.addWallTime(System.nanoTime() - start);
+            }
+        }
+
+        protected abstract T parse(InputStream inStream, ImportReport.Stage stage) throws Exception;
+    }
+
+    private final Source mSource;
+    private final Target mTarget;
+    private final ImportReport mReport = new ImportReport();
+
+    public WalksImporter(Source source, Target target) {
+        mSource = source;
+        mTarget = target;
+    }
+
+    public ImportReport run() throws IOException {
+        long start = System.nanoTime();
+        // create the stages up front so the report lists them in a sensible order
+        for (String fileName : new String[]{ ROUTE_DESCRIPTIONS_FILE, ROUTES_FILE, WILDLIFE_DESCRIPTIONS_FILE,
+                WILDLIFE_FILE, ROUTES_IN_AREAS_FILE, WRITER_STAGE }) {
+            mReport.getStage(fileName);
+        }
+
+        int threads = Math.max(1, Math.min(MAX_PARSER_THREADS, Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            // start all the parsers, the ones other parsers wait on are submitted first
+            final Future<Map<Integer, String>> descriptions = executor.submit(
+                    new ParseTask<Map<Integer, String>>(ROUTE_DESCRIPTIONS_FILE) {
+                @Override
+                protected Map<Integer, String> parse(InputStream inStream, ImportReport.Stage stage)
+                        throws IOException {
+                    return loadRouteDescriptions(inStream, stage);
+                }
+            });
+            final Future<List<String>> wildlifeDescriptions = executor.submit(
+                    new ParseTask<List<String>>(WILDLIFE_DESCRIPTIONS_FILE) {
+                @Override
+                protected List<String> parse(InputStream inStream, ImportReport.Stage stage) throws IOException {
+                    return loadWildlifeDescriptions(inStream, stage);
+                }
+            });
+            final BlockingQueue<List<RouteRow>> routeQueue = new ArrayBlockingQueue<List<RouteRow>>(ROUTE_QUEUE_SIZE);
+            Future<Void> routes = executor.submit(new ParseTask<Void>(ROUTES_FILE) {
+                @Override
+                protected Void parse(InputStream inStream, ImportReport.Stage stage) throws Exception {
+                    try {
+                        loadRoutes(inStream, stage, descriptions, routeQueue);
+                    } finally {
+                        routeQueue.put(END_OF_ROUTES);
+                    }
+                    return null;
+                }
+            });
+            Future<List<ParsedWildlife>> wildlife = executor.submit(
+                    new ParseTask<List<ParsedWildlife>>(WILDLIFE_FILE) {
+                @Override
+                protected List<ParsedWildlife> parse(InputStream inStream, ImportReport.Stage stage)
+                        throws IOException {
+                    return loadWildlife(inStream, stage, wildlifeDescriptions);
+                }
+            });
+            Future<List<ParsedRouteInArea>> routesInAreas = executor.submit(
+                    new ParseTask<List<ParsedRouteInArea>>(ROUTES_IN_AREAS_FILE) {
+                @Override
+                protected List<ParsedRouteInArea> parse(InputStream inStream, ImportReport.Stage stage)
+                        throws IOException {
+                    return loadRoutesInAreas(inStream, stage);
+                }
+            });
+
+            // write the routes as they arrive
+            ImportReport.Stage routeStage = mReport.getStage(ROUTES_FILE);
+            ImportReport.Stage writerStage = mReport.getStage(WRITER_STAGE);
+            for (List<RouteRow> batch = take(routeQueue); batch != END_OF_ROUTES; batch = take(routeQueue)) {
+                long writeStart = System.nanoTime();
+                mTarget.insertRoutes(batch);
+                writerStage.addWallTime(System.nanoTime() - writeStart);
+                routeStage.inserted(batch.size());
+                writerStage.inserted(batch.size());
+            }
+            getResult(routes);
+
+            // everything else needs the ids of the routes
+            List<ParsedWildlife> parsedWildlife = getResult(wildlife);
+            List<ParsedRouteInArea> parsedRoutesInAreas = getResult(routesInAreas);
+            long writeStart = System.nanoTime();
+            Map<Integer, Long> routeIds = mTarget.loadRouteIds();
+            insertWildlife(parsedWildlife, routeIds);
+            insertRoutesInAreas(parsedRoutesInAreas, routeIds);
+            writerStage.addWallTime(System.nanoTime() - writeStart);
+        } finally {
+            executor.shutdownNow();
+            mReport.setWallTime(System.nanoTime() - start);
+        }
+        return mReport;
+    }
+
+    private static <T> T take(BlockingQueue<T> queue) throws IOException {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while importing");
+        }
+    }
+
+    // waits for a parser and rethrows anything it threw
+    private static <T> T getResult(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while importing");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Error while importing: " + cause);
+        }
+    }
+
+    // routes
+
+    private static Map<Integer, String> loadRouteDescriptions(InputStream inStream, ImportReport.Stage stage)
+            throws IOException {
+        Map<Integer, String> rtnMap = new HashMap<Integer, String>();
+        CsvReader csv = new CsvReader(inStream);
+        try {
+            csv.readRecord(); // read and throw away the first line
+            while (csv.readRecord()) {
+                if (csv.size() < 2) {
+                    rejectShortRecord(csv, stage);
+                    continue;
+                }
+                try {
+                    int routeNumber = Integer.parseInt(csv.get(0).trim());
+                    rtnMap.put(routeNumber, csv.get(1));
+                    stage.parsed();
+                } catch (NumberFormatException e) {
+                    stage.rejected("invalid route number");
+                }
+            }
+        } finally {
+            csv.close();
+        }
+        return rtnMap;
+    }
+
+    private void loadRoutes(InputStream jsonIS, ImportReport.Stage stage,
+                            Future<Map<Integer, String>> descriptionsFuture,
+                            BlockingQueue<List<RouteRow>> routeQueue)
+            throws IOException, InterruptedException {
+        // stream the features out of the json a route at a time and queue them in small batches
+        GeoJsonFeatureReader reader = new GeoJsonFeatureReader(jsonIS);
+        GeoJsonFeatureReader.Feature path = new GeoJsonFeatureReader.Feature();
+        Map<Integer, String> descriptions = null;
+        List<RouteRow> batch = new ArrayList<RouteRow>(ROUTE_INSERT_BATCH_SIZE);
+        try {
+            long readStart = System.nanoTime();
+            while (reader.readFeature(path)) {
+                long readTime = System.nanoTime() - readStart;
+                if (descriptions == null) {
+                    descriptions = getResult(descriptionsFuture);
+                }
+                RouteRow route = routeFromFeature(path, descriptions);
+                stage.parsed();
+                mReport.routeRead(path.getPointCount(), readTime);
+                if (!path.hasGeometry()) {
+                    // still inserted but worth knowing about
+                    stage.warning("no geometry");
+                }
+                batch.add(route);
+                if (batch.size() == ROUTE_INSERT_BATCH_SIZE) {
+                    routeQueue.put(batch);
+                    batch = new ArrayList<RouteRow>(ROUTE_INSERT_BATCH_SIZE);
+                }
+                readStart = System.nanoTime();
+            }
+            if (!batch.isEmpty()) {
+                routeQueue.put(batch);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static RouteRow routeFromFeature(GeoJsonFeatureReader.Feature path, Map<Integer, String> descriptions) {
+        RouteRow route = new RouteRow();
+        route.coordinates = PathCodec.encode(path.getLats(), path.getLngs(), path.getPointCount(),
+                path.getPartStarts(), path.getPartCount());
+        route.coordinatesLow = PathSimplifier.simplify(path.getLats(), path.getLngs(), path.getPointCount(),
+                path.getPartStarts(), path.getPartCount(), PathSimplifier.LOW_TOLERANCE_METRES);
+        route.coordinatesMedium = PathSimplifier.simplify(path.getLats(), path.getLngs(), path.getPointCount(),
+                path.getPartStarts(), path.getPartCount(), PathSimplifier.MEDIUM_TOLERANCE_METRES);
+        PathMeasure measure = new PathMeasure(path.getLats(), path.getLngs(), path.getPointCount(),
+                path.getPartStarts(), path.getPartCount());
+        route.measuredLength = measure.getLengthMetres();
+        route.pointCount = path.getPointCount();
+        if (route.pointCount > 0) {
+            route.minLat = path.getMinLat();
+            route.minLng = path.getMinLng();
+            route.maxLat = path.getMaxLat();
+            route.maxLng = path.getMaxLng();
+            route.startLat = path.getLats()[0];
+            route.startLng = path.getLngs()[0];
+            route.endLat = path.getLats()[route.pointCount - 1];
+            route.endLng = path.getLngs()[route.pointCount - 1];
+        }
+        if (measure.hasCentre()) {
+            route.centreLat = measure.getCentreLat();
+            route.centreLng = measure.getCentreLng();
+        }
+
+        if (path.hasProperties()) {
+            route.routeNumber = path.getIntProperty("route_no", -1);
+            String pathType = path.getProperty("path_type");
+            if (pathType != null) {
+                route.pathType = pathType;
+            }
+            route.length = path.getIntProperty("length", 0);
+            String surface = path.getProperty("surface");
+            if (surface != null && !surface.equalsIgnoreCase("null")) {
+                route.surface = surface;
+            }
+            String description = descriptions.get(route.routeNumber);
+            if (description != null && !description.equalsIgnoreCase("null")) {
+                route.description = description;
+            }
+        }
+        return route;
+    }
+
+    // wildlife
+
+    private static List<String> loadWildlifeDescriptions(InputStream inStream, ImportReport.Stage stage)
+            throws IOException {
+        List<String> descriptions = new ArrayList<String>();
+        JsonReader reader = new JsonReader(new InputStreamReader(inStream, "UTF-8"));
+        // the file has a trailing comma after the last description
+        reader.setLenient(true);
+        try {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    descriptions.add(null);
+                    stage.warning("no description");
+                } else {
+                    descriptions.add(reader.nextString());
+                    stage.parsed();
+                }
+            }
+            reader.endArray();
+        } finally {
+            reader.close();
+        }
+        return descriptions;
+    }
+
+    private static List<ParsedWildlife> loadWildlife(InputStream inStream, ImportReport.Stage stage,
+                                                     Future<List<String>> descriptionsFuture)
+            throws IOException {
+        List<ParsedWildlife> rtnList = new ArrayList<ParsedWildlife>();
+        CsvReader csv = new CsvReader(inStream);
+        try {
+            // there is an empty line and then the column names before the data
+            csv.readRecord();
+            csv.readRecord();
+            List<String> descriptions = getResult(descriptionsFuture);
+            int idx = 0;
+            while (csv.readRecord()) {
+                if (csv.size() >= 5) {
+                    // get the values out of the row
+                    ParsedWildlife parsed = new ParsedWildlife();
+                    WildlifeRow wildlife = parsed.wildlife;
+                    wildlife.name = csv.get(1);
+                    wildlife.category = csv.get(2);
+                    wildlife.description = csv.get(3);
+                    if (idx < descriptions.size() && descriptions.get(idx) != null) {
+                        wildlife.description = descriptions.get(idx);
+                    }
+                    wildlife.whenSeen = csv.get(5);
+
+                    // images are optional
+                    if (csv.size() > 6) {
+                        wildlife.imageName = csv.get(6);
+                    }
+
+                    // the routes the wildlife is found on are a comma separated list
+                    // that may have a trailing comma
+                    for (String routeNumStr : csv.get(4).split(",")) {
+                        routeNumStr = routeNumStr.replace('.', ' ').trim();
+                        if (routeNumStr.isEmpty()) {
+                            continue;
+                        }
+                        try {
+                            parsed.routeNumbers.add(Integer.parseInt(routeNumStr));
+                        } catch (NumberFormatException e) {
+                            stage.rejected("invalid route number");
+                        }
+                    }
+                    rtnList.add(parsed);
+                    stage.parsed();
+                } else {
+                    rejectShortRecord(csv, stage);
+                }
+                ++idx;
+            }
+        } finally {
+            csv.close();
+        }
+        return rtnList;
+    }
+
+    private void insertWildlife(List<ParsedWildlife> parsedWildlife, Map<Integer, Long> routeIds)
+            throws IOException {
+        ImportReport.Stage stage = mReport.getStage(WILDLIFE_FILE);
+        List<long[]> wildlifeOnRoutes = new ArrayList<long[]>();
+        // a route listed twice for the same wildlife is only linked once, the junction table is unique
+        Set<Long> linked = new HashSet<Long>();
+        for (ParsedWildlife parsed : parsedWildlife) {
+            long wildlifeId = mTarget.insertWildlife(parsed.wildlife);
+            inserted(stage, 1);
+
+            // resolve the routes the wildlife is found on from the route number index
+            for (int routeNumber : parsed.routeNumbers) {
+                Long routeId = routeIds.get(routeNumber);
+                if (routeId == null) {
+                    stage.rejected("unknown route number");
+                } else if (!linked.add(pair(wildlifeId, routeId))) {
+                    stage.skipped("duplicate route");
+                } else {
+                    wildlifeOnRoutes.add(new long[] { wildlifeId, routeId });
+                }
+            }
+        }
+
+        // insert the links between wildlife and routes in one go
+        mTarget.insertWildlifeOnRoutes(wildlifeOnRoutes);
+        inserted(stage, wildlifeOnRoutes.size());
+    }
+
+    // areas
+
+    private static List<ParsedRouteInArea> loadRoutesInAreas(InputStream inStream, ImportReport.Stage stage)
+            throws IOException {
+        List<ParsedRouteInArea> rtnList = new ArrayList<ParsedRouteInArea>();
+        CsvReader csv = new CsvReader(inStream);
+        try {
+            csv.readRecord();
+            while (csv.readRecord()) {
+                if (csv.size() < 2) {
+                    rejectShortRecord(csv, stage);
+                    continue;
+                }
+                try {
+                    rtnList.add(new ParsedRouteInArea(Integer.parseInt(csv.get(0).trim()), csv.get(1)));
+                    stage.parsed();
+                } catch (NumberFormatException e) {
+                    stage.rejected("invalid route number");
+                }
+            }
+        } finally {
+            csv.close();
+        }
+        return rtnList;
+    }
+
+    private void insertRoutesInAreas(List<ParsedRouteInArea> routesInAreas, Map<Integer, Long> routeIds)
+            throws IOException {
+        // build up a hash table of the area names to the routes that cross them
+        // areas keep the order they first appear in the file so their ids are stable
+        // a route listed twice in the same area is only linked once, the junction table is unique
+        Map<String, Set<Long>> areas = new LinkedHashMap<String, Set<Long>>();
+        // a route's primary area is the first area it is listed against
+        Map<Long, String> primaryAreaNames = new HashMap<Long, String>();
+        ImportReport.Stage stage = mReport.getStage(ROUTES_IN_AREAS_FILE);
+        for (ParsedRouteInArea routeInArea : routesInAreas) {
+            // resolve the route id from it's number
+            Long routeId = routeIds.get(routeInArea.routeNumber);
+            if (routeId == null) {
+                stage.rejected("unknown route number");
+                continue;
+            }
+
+            // find the area and add the route id to it's routes
+            Set<Long> routes = areas.get(routeInArea.areaName);
+            if (routes == null) {
+                routes = new LinkedHashSet<Long>();
+                areas.put(routeInArea.areaName, routes);
+            }
+            if (!routes.add(routeId)) {
+                stage.skipped("duplicate route");
+                continue;
+            }
+            if (!primaryAreaNames.containsKey(routeId)) {
+                primaryAreaNames.put(routeId, routeInArea.areaName);
+            }
+        }
+
+        // insert the areas and the links between the routes and the areas
+        Map<String, Long> areaIds = new HashMap<String, Long>();
+        List<long[]> links = new ArrayList<long[]>();
+        for (Map.Entry<String, Set<Long>> area : areas.entrySet()) {
+            long areaId = mTarget.insertArea(area.getKey());
+            inserted(stage, 1);
+            areaIds.put(area.getKey(), areaId);
+            for (long routeId : area.getValue()) {
+                links.add(new long[] { routeId, areaId });
+            }
+        }
+        mTarget.insertRoutesInAreas(links);
+        inserted(stage, links.size());
+
+        // set every route's primary area in one go
+        Map<Long, Long> primaryAreas = new HashMap<Long, Long>();
+        for (Map.Entry<Long, String> primaryArea : primaryAreaNames.entrySet()) {
+            primaryAreas.put(primaryArea.getKey(), areaIds.get(primaryArea.getValue()));
+        }
+        mTarget.setPrimaryAreas(primaryAreas);
+    }
+
+    // two ids in one long for a set of the links already made
+    private static long pair(long first, long second) {
+        return (first << 32) | second;
+    }
+
+    // counts rows written to the target against a stage and the writer
+    private void inserted(ImportReport.Stage stage, int rows) {
+        stage.inserted(rows);
+        mReport.getStage(WRITER_STAGE).inserted(rows);
+    }
+
+    // blank lines are skipped quietly, anything else without enough fields is rejected
+    private static void rejectShortRecord(CsvReader csv, ImportReport.Stage stage) {
+        if (csv.size() > 0) {
+            stage.rejected("too few fields");
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package uk.gov.eastlothian.gowalk.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import uk.gov.eastlothian.gowalk.model.GeoHash;
+
+/**
+ * The changes to the installed database that copying the reference data from
+ * the prebuilt database doesn't make: the user's own tables and the indexes.
+ *
+ * Each migration brings the database up to one version of WalksSchema and
+ * they run in order, only the ones after the installed version.  WalksDbHelper
+ * runs them in the same transaction as the reference data upgrade, then the
+ * indexes in WalksSchema are created and checked.
+ */
+class WalksMigrations {
+
+    private abstract static class Migration {
+        private final int version;
+
+        private Migration(int version) {
+            this.version = version;
+        }
+
+        abstract void migrate(SQLiteDatabase db);
+    }
+
+    // in order of version
+    private static final Migration[] MIGRATIONS = {
+            // lat and lng as numbers with the geohash of each log entry
+            new Migration(7) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    migrateLogEntryLocations(db);
+                }
+            },
+            // the junction table indexes are replaced by ones that cover the joins
+            new Migration(8) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    for (String index : WalksSchema.DROPPED_INDEXES) {
+                        db.execSQL("DROP INDEX IF EXISTS main." + index);
+                    }
+                }
+            }
+    };
+
+    private WalksMigrations() {
+    }
+
+    /**
+     * Runs every migration to a version after fromVersion, oldest first.
+     * Returns the number of migrations run.
+     */
+    static int migrate(SQLiteDatabase db, int fromVersion) {
+        int rtn = 0;
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version > fromVersion && migration.version <= WalksSchema.VERSION) {
+                migration.migrate(db);
+                ++rtn;
+            }
+        }
+        return rtn;
+    }
+
+    /**
+     * Creates the indexes in WalksSchema that the database doesn't have and
+     * checks they are all there afterwards.  Returns the names of the indexes
+     * that were created.
+     */
+    static List<String> createIndexes(SQLiteDatabase db) {
+        List<String> rtn = missingIndexes(db);
+        if (rtn.isEmpty()) {
+            return rtn;
+        }
+        for (String sql : WalksSchema.CREATE_INDEXES) {
+            db.execSQL(sql);
+        }
+        List<String> stillMissing = missingIndexes(db);
+        if (!stillMissing.isEmpty()) {
+            throw new SQLiteException("Indexes not created: " + stillMissing);
+        }
+        return rtn;
+    }
+
+    // the indexes in WalksSchema that aren't in the database
+    static List<String> missingIndexes(SQLiteDatabase db) {
+        Set<String> indexes = new HashSet<String>();
+        Cursor cursor = db.rawQuery("SELECT name FROM main.sqlite_master WHERE type = 'index'", null);
+        try {
+            while (cursor.moveToNext()) {
+                indexes.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        List<String> rtn = new ArrayList<String>(Arrays.asList(WalksSchema.INDEX_NAMES));
+        rtn.removeAll(indexes);
+        return rtn;
+    }
+
+    /*
+     * Rebuilds log_entry with numeric lat and lng and a geohash, keeping every entry.
+     * An entry whose location isn't a number keeps it as it was and won't be found
+     * by location.
+     */
+    private static void migrateLogEntryLocations(SQLiteDatabase db) {
+        String table = WalksContract.LogEntry.TABLE_NAME;
+        if (hasColumn(db, table, WalksContract.LogEntry.COLUMN_GEOHASH)) {
+            return;
+        }
+        db.execSQL("ALTER TABLE main." + table + " RENAME TO " + table + "_old");
+        db.execSQL(WalksSchema.SQL_CREATE_LOG_ENTRY_TABLE);
+        Cursor cursor = db.rawQuery("SELECT * FROM main." + table + "_old", null);
+        try {
+            while (cursor.moveToNext()) {
+                ContentValues values = new ContentValues();
+                DatabaseUtils.cursorRowToContentValues(cursor, values);
+                Double lat = values.getAsDouble(WalksContract.LogEntry.COLUMN_LAT);
+                Double lng = values.getAsDouble(WalksContract.LogEntry.COLUMN_LNG);
+                if (lat != null && lng != null) {
+                    values.put(WalksContract.LogEntry.COLUMN_LAT, lat);
+                    values.put(WalksContract.LogEntry.COLUMN_LNG, lng);
+                    values.put(WalksContract.LogEntry.COLUMN_GEOHASH, GeoHash.encode(lat, lng));
+                } else {
+                    values.put(WalksContract.LogEntry.COLUMN_GEOHASH, -1);
+                }
+                db.insertOrThrow("main." + table, null, values);
+            }
+        } finally {
+            cursor.close();
+        }
+        db.execSQL("DROP TABLE main." + table + "_old");
+    }
+
+    private static boolean hasColumn(SQLiteDatabase db, String table, String column) {
+        Cursor cursor = db.rawQuery("PRAGMA main.table_info(" + table + ")", null);
+        try {
+            int nameIndex = cursor.getColumnIndex("name");
+            while (cursor.moveToNext()) {
+                if (column.equals(cursor.getString(nameIndex))) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -1,13 +1,33 @@
 package uk.gov.eastlothian.gowalk.data;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.MergeCursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Bundle;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import uk.gov.eastlothian.gowalk.model.GeoHash;
+import uk.gov.eastlothian.gowalk.model.Route;
+import uk.gov.eastlothian.gowalk.model.RouteIndex;
 
 /**
  * Created by davidmorrison on 21/11/14.
@@ -17,6 +37,9 @@ public class WalksProvider extends ContentProvider {
     // constants to distinguish different kinds of query
     private static final int ROUTE = 100;                   // list of routes
     private static final int ROUTE_ID = 101;                // single route from id
+    private static final int ROUTES_IN_BOUNDS = 102;        // list of routes whose bounding box overlaps a box
+    private static final int ROUTES_NEAREST = 103;          // list of the routes nearest a point
+    private static final int ROUTE_DETAIL = 104;            // a route with its area and wildlife
     private static final int AREA = 200;                    // list of areas
     private static final int AREA_ID = 201;                 // single area from id
     private static final int ROUTE_IN_AREA = 300;           // list of rows in junction table route_in_area
@@ -34,8 +57,23 @@ public class WalksProvider extends ContentProvider {
     private static final int LOG_ENTRY = 600;               // list of log entries
     private static final int LOG_ENTRY_ID = 601;            // single log entry base on id
     private static final int WILDLIFE_THAT_HAVE_LOG_ENTRIES = 602; //
+    private static final int LOG_ENTRIES_IN_BOUNDS = 603;   // list of log entries inside a box
+    private static final int LOG_ENTRIES_NEAR = 604;        // list of log entries within a radius of a point
+
+    // default number of routes from the nearest routes uri
+    private static final int DEFAULT_NEAREST_LIMIT = 10;
+    // the most geohash cells looked up for a log entry box, fewer cells means bigger ones
+    private static final int MAX_GEOHASH_CELLS = 8;
+    private static final double METRES_PER_DEGREE = 111320.0;
 
     private WalksDbHelper mOpenHelper;
+    // every route's path for the nearest routes uri, built on first use and dropped when a route changes
+    private RouteIndex mRouteIndex;
+    // the sql of each kind of query, the values are always bound so the statements are reused
+    private final QueryTemplates mTemplates = new QueryTemplates();
+
+    // uris changed by the batch running on this thread, notified once the batch commits
+    private final ThreadLocal<Set<Uri>> mBatchChanges = new ThreadLocal<Set<Uri>>();
     private static final UriMatcher sUriMatcher = buildUriMatcher();
 
     private static UriMatcher buildUriMatcher() {
@@ -47,6 +85,9 @@ public class WalksProvider extends ContentProvider {
         matcher.addURI(authority, WalksContract.PATH_ROUTE + "/#", ROUTE_ID);
         matcher.addURI(authority, WalksContract.PATH_ROUTE + "/#/area", AREAS_FOR_ROUTE);
         matcher.addURI(authority, WalksContract.PATH_ROUTE + "/#/wildlife", WILDLIFE_FOR_ROUTE);
+        matcher.addURI(authority, WalksContract.PATH_ROUTE + "/#/detail", ROUTE_DETAIL);
+        matcher.addURI(authority, WalksContract.PATH_ROUTE + "/bbox", ROUTES_IN_BOUNDS);
+        matcher.addURI(authority, WalksContract.PATH_ROUTE + "/near", ROUTES_NEAREST);
 
         // areas
         matcher.addURI(authority, WalksContract.PATH_AREA, AREA);
@@ -72,6 +113,8 @@ public class WalksProvider extends ContentProvider {
         matcher.addURI(authority, WalksContract.PATH_LOG_ENTRY + "/#", LOG_ENTRY_ID);
         matcher.addURI(authority, WalksContract.PATH_LOG_ENTRY + "/wildlife", WILDLIFE_THAT_HAVE_LOG_ENTRIES);
         matcher.addURI(authority, WalksContract.PATH_LOG_ENTRY + "/wildlife/#", LOG_ENTRIES_FOR_WILDLIFE);
+        matcher.addURI(authority, WalksContract.PATH_LOG_ENTRY + "/bbox", LOG_ENTRIES_IN_BOUNDS);
+        matcher.addURI(authority, WalksContract.PATH_LOG_ENTRY + "/near", LOG_ENTRIES_NEAR);
 
         return matcher;
     }
@@ -83,34 +126,36 @@ public class WalksProvider extends ContentProvider {
     }
 
     @Override
-    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+    public Cursor query(Uri uri, final String[] projection, String selection, String[] selectionArgs, String sortOrder) {
         Cursor rtnCursor;
-        switch (sUriMatcher.match(uri))
+        final int match = sUriMatcher.match(uri);
+        switch (match)
         {
             case ROUTE:
-                rtnCursor = mOpenHelper.getReadableDatabase().query(
-                    WalksContract.RouteEntry.TABLE_NAME,
-                    projection,
-                    selection,
-                    selectionArgs,
-                    null,
-                    null,
-                    sortOrder);
+                rtnCursor = queryTable(match, WalksContract.RouteEntry.TABLE_NAME,
+                    projection, selection, selectionArgs, sortOrder);
                 break;
             case ROUTE_ID:
-                rtnCursor = mOpenHelper.getReadableDatabase().query(
-                    WalksContract.RouteEntry.TABLE_NAME,
-                    projection,
-                    WalksContract.RouteEntry._ID + " = '" + ContentUris.parseId(uri) + "'",
-                    null,
-                    null,
-                    null,
-                    sortOrder);
+                rtnCursor = queryTable(match, WalksContract.RouteEntry.TABLE_NAME,
+                    projection, WalksContract.RouteEntry._ID + " = ?",
+                    new String[]{ Long.toString(ContentUris.parseId(uri)) }, sortOrder);
+                break;
+            case ROUTES_IN_BOUNDS:
+                rtnCursor = queryRoutesInBounds(uri, projection, selection, selectionArgs, sortOrder);
+                break;
+            case ROUTE_DETAIL:
+                rtnCursor = queryRouteDetail(uri, projection);
+                break;
+            case ROUTES_NEAREST:
+                rtnCursor = queryNearestRoutes(uri, projection, selection, selectionArgs, sortOrder);
                 break;
             case AREAS_FOR_ROUTE: {
                 // TODO: refactor so this uses the
                 String [] subs = new String [] { WalksContract.RouteEntry.getRouteFromUri(uri) };
-                String query = "SELECT "      + WalksContract.AreaEntry.TABLE_NAME +
+                rtnCursor = rawQuery(QueryTemplates.key(match, null, null, null), new QueryTemplates.Builder() {
+                    @Override
+                    public String build() {
+                        return "SELECT "      + WalksContract.AreaEntry.TABLE_NAME +
                                           "." + WalksContract.AreaEntry._ID + " ,"
                                               + WalksContract.AreaEntry.COLUMN_AREA_NAME +
                                " FROM "       + WalksContract.AreaEntry.TABLE_NAME +
@@ -122,41 +167,49 @@ public class WalksProvider extends ContentProvider {
                                " WHERE "      + WalksContract.RouteInAreaEntry.TABLE_NAME +
                                           "." + WalksContract.RouteInAreaEntry.COLUMN_ROUTE_KEY +
                                           "=?;";
-                rtnCursor = mOpenHelper.getReadableDatabase().rawQuery(query, subs);
+                    }
+                }, subs);
             }
             break;
             case ROUTES_FOR_AREAS: {
-                String query = "SELECT area._ID, " +
-                        "area.name, " +
-                        "route._ID, " +
-                        "route.route_number, " +
-                        "route.coordinates, " +
-                        "route.path_type, " +
-                        "route.length, " +
-                        "route.surface " +
-                        "FROM area " +
-                        "INNER JOIN (" +
-                        "route INNER JOIN " +
-                        "route_in_area " +
-                        "ON route_in_area.route_id = route._ID) " +
-                        "ON area._ID = route_in_area.area_id ORDER BY 1, 2;";
-                rtnCursor = mOpenHelper.getReadableDatabase().rawQuery(query, new String[]{});
+                // every area in order with its routes, the area's id and name then the route's
+                // columns from the projection, an area without routes has one row of nulls
+                rtnCursor = rawQuery(QueryTemplates.key(match, projection, null, null), new QueryTemplates.Builder() {
+                    @Override
+                    public String build() {
+                        String columns = selectColumns("route", projection, "route.*");
+                        return "SELECT area._id AS " + WalksContract.RouteInAreaEntry.COLUMN_AREA_KEY + ", " +
+                                "area.name AS " + WalksContract.AreaEntry.COLUMN_AREA_NAME + ", " +
+                                columns + " " +
+                                "FROM area " +
+                                "LEFT JOIN route_in_area ON route_in_area.area_id = area._id " +
+                                "LEFT JOIN route ON route._id = route_in_area.route_id " +
+                                "ORDER BY area._id, route_in_area.route_id";
+                    }
+                }, null);
             }
             break;
             case WILDLIFE_FOR_ROUTE: {
                 String [] subs = new String [] { WalksContract.RouteEntry.getRouteFromUri(uri) };
                 // TODO: refactor the query to use the WalksContract
-                String query = "SELECT wildlife._ID, " +
-                    "wildlife.name, " +
-                    "wildlife.category, " +
-                    "wildlife.description, " +
-                    "wildlife.image_name, " +
-                    "wildlife.when_seen " +
-                    "FROM wildlife " +
-                    "INNER JOIN wildlife_on_route " +
-                    "ON wildlife._ID " +
-                    "= wildlife_on_route.wildlife_id " +
-                    "WHERE wildlife_on_route.route_id = ?;";
+                rtnCursor = rawQuery(QueryTemplates.key(match, projection, null, null), new QueryTemplates.Builder() {
+                    @Override
+                    public String build() {
+                        String columns = selectColumns("wildlife", projection,
+                            "wildlife._ID, " +
+                            "wildlife.name, " +
+                            "wildlife.category, " +
+                            "wildlife.description, " +
+                            "wildlife.image_name, " +
+                            "wildlife.when_seen");
+                        return "SELECT " + columns + " " +
+                            "FROM wildlife " +
+                            "INNER JOIN wildlife_on_route " +
+                            "ON wildlife._ID " +
+                            "= wildlife_on_route.wildlife_id " +
+                            "WHERE wildlife_on_route.route_id = ?;";
+                    }
+                }, subs);
 
                 /*
                 String query = "SELECT " + WalksContract.WildlifeEntry.TABLE_NAME +
@@ -184,170 +237,131 @@ public class WalksProvider extends ContentProvider {
                         "= wildlife_on_route._ID " +
                         "WHERE wildlife_on_route.route_id = ?;";
                         */
-                rtnCursor = mOpenHelper.getReadableDatabase().rawQuery(query, subs);
             }
                 break;
             case AREA:
-                rtnCursor = mOpenHelper.getReadableDatabase().query(
-                    WalksContract.AreaEntry.TABLE_NAME,
-                    projection,
-                    selection,
-                    selectionArgs,
-                    null,
-                    null,
-                    sortOrder);
+                rtnCursor = queryTable(match, WalksContract.AreaEntry.TABLE_NAME,
+                    projection, selection, selectionArgs, sortOrder);
                 break;
             case AREA_ID:
-                rtnCursor = mOpenHelper.getReadableDatabase().query(
-                    WalksContract.AreaEntry.TABLE_NAME,
-                    projection,
-                    WalksContract.AreaEntry._ID + " = '" + ContentUris.parseId(uri) + "'",
-                    null,
-                    null,
-                    null,
-                    sortOrder);
+                rtnCursor = queryTable(match, WalksContract.AreaEntry.TABLE_NAME,
+                    projection, WalksContract.AreaEntry._ID + " = ?",
+                    new String[]{ Long.toString(ContentUris.parseId(uri)) }, sortOrder);
                 break;
             case ROUTES_FOR_AREA: {
                 String [] subs = new String [] { WalksContract.AreaEntry.getAreaFromUri(uri) };
-                String query = "SELECT route._ID, " +
-                    "route.route_number, " +
-                    "route.coordinates, " +
-                    "route.path_type, " +
-                    "route.length, " +
-                    "route.surface, " +
-                    "route.description, " +
-                    "route.primary_area, " +
-                    "route_in_area.area_id " +
-                    "FROM route " +
-                    "INNER JOIN route_in_area " +
-                    "ON route_in_area.route_id = route._ID " +
-                    "WHERE route_in_area.area_id = ?;";
-                rtnCursor = mOpenHelper.getReadableDatabase().rawQuery(query, subs);
+                rtnCursor = rawQuery(QueryTemplates.key(match, projection, null, null), new QueryTemplates.Builder() {
+                    @Override
+                    public String build() {
+                        String columns = selectColumns("route", projection,
+                            "route._ID, " +
+                            "route.route_number, " +
+                            "route.coordinates, " +
+                            "route.path_type, " +
+                            "route.length, " +
+                            "route.surface, " +
+                            "route.description, " +
+                            "route.primary_area, " +
+                            "route_in_area.area_id");
+                        return "SELECT " + columns + " " +
+                            "FROM route " +
+                            "INNER JOIN route_in_area " +
+                            "ON route_in_area.route_id = route._ID " +
+                            "WHERE route_in_area.area_id = ?;";
+                    }
+                }, subs);
                 }
                 break;
             case ROUTE_IN_AREA:
-                rtnCursor = mOpenHelper.getReadableDatabase().query(
-                    WalksContract.RouteInAreaEntry.TABLE_NAME,
-                    projection,
-                    selection,
-                    selectionArgs,
-                    null,
-                    null,
-                    sortOrder);
+                rtnCursor = queryTable(match, WalksContract.RouteInAreaEntry.TABLE_NAME,
+                    projection, selection, selectionArgs, sortOrder);
                 break;
             case ROUTE_IN_AREA_ID:
-                rtnCursor = mOpenHelper.getReadableDatabase().query(
-                    WalksContract.RouteInAreaEntry.TABLE_NAME,
-                    projection,
-                    WalksContract.RouteInAreaEntry._ID + " = '" + ContentUris.parseId(uri) + "'",
-                    null,
-                    null,
-                    null,
-                    sortOrder);
+                rtnCursor = queryTable(match, WalksContract.RouteInAreaEntry.TABLE_NAME,
+                    projection, WalksContract.RouteInAreaEntry._ID + " = ?",
+                    new String[]{ Long.toString(ContentUris.parseId(uri)) }, sortOrder);
                 break;
             case WILDLIFE:
-                rtnCursor = mOpenHelper.getReadableDatabase().query(
-                    WalksContract.WildlifeEntry.TABLE_NAME,
-                    projection,
-                    selection,
-                    selectionArgs,
-                    null,
-                    null,
-                    sortOrder);
+                rtnCursor = queryTable(match, WalksContract.WildlifeEntry.TABLE_NAME,
+                    projection, selection, selectionArgs, sortOrder);
                 break;
             case WILDLIFE_ID:
-                rtnCursor = mOpenHelper.getReadableDatabase().query(
-                    WalksContract.WildlifeEntry.TABLE_NAME,
-                    projection,
-                    WalksContract.WildlifeEntry._ID + " = '" + ContentUris.parseId(uri) + "'",
-                    null,
-                    null,
-                    null,
-                    sortOrder);
+                rtnCursor = queryTable(match, WalksContract.WildlifeEntry.TABLE_NAME,
+                    projection, WalksContract.WildlifeEntry._ID + " = ?",
+                    new String[]{ Long.toString(ContentUris.parseId(uri)) }, sortOrder);
                 break;
             case ROUTES_FOR_WILDLIFE: {
                 String [] subs = new String [] {
                         WalksContract.WildlifeEntry.getWildlifeFromUri(uri)
                 };
-                String query = "SELECT route._ID, " +
-                    "route.route_number, " +
-                    "route.coordinates, " +
-                    "route.path_type, " +
-                    "route.length, " +
-                    "route.surface, " +
-                    "route.description, " +
-                    "route.primary_area " +
-                    "FROM route " +
-                    "INNER JOIN wildlife_on_route " +
-                    "ON wildlife_on_route.route_id = route._ID " +
-                    "WHERE wildlife_on_route.wildlife_id = ?";
-                rtnCursor = mOpenHelper.getReadableDatabase().rawQuery(query, subs);
+                rtnCursor = rawQuery(QueryTemplates.key(match, projection, null, null), new QueryTemplates.Builder() {
+                    @Override
+                    public String build() {
+                        String columns = selectColumns("route", projection,
+                            "route._ID, " +
+                            "route.route_number, " +
+                            "route.coordinates, " +
+                            "route.path_type, " +
+                            "route.length, " +
+                            "route.surface, " +
+                            "route.description, " +
+                            "route.primary_area");
+                        return "SELECT " + columns + " " +
+                            "FROM route " +
+                            "INNER JOIN wildlife_on_route " +
+                            "ON wildlife_on_route.route_id = route._ID " +
+                            "WHERE wildlife_on_route.wildlife_id = ?";
+                    }
+                }, subs);
             }
             break;
             case WILDLIFE_ON_ROUTE:
-                rtnCursor = mOpenHelper.getReadableDatabase().query(
-                    WalksContract.WildlifeOnRouteEntry.TABLE_NAME,
-                    projection,
-                    selection,
-                    selectionArgs,
-                    null,
-                    null,
-                    sortOrder);
+                rtnCursor = queryTable(match, WalksContract.WildlifeOnRouteEntry.TABLE_NAME,
+                    projection, selection, selectionArgs, sortOrder);
                 break;
             case WILDLIFE_ON_ROUTE_ID:
-                rtnCursor = mOpenHelper.getReadableDatabase().query(
-                    WalksContract.WildlifeOnRouteEntry.TABLE_NAME,
-                    projection,
-                    WalksContract.WildlifeOnRouteEntry._ID + " = '" + ContentUris.parseId(uri) + "'",
-                    null,
-                    null,
-                    null,
-                    sortOrder);
+                rtnCursor = queryTable(match, WalksContract.WildlifeOnRouteEntry.TABLE_NAME,
+                    projection, WalksContract.WildlifeOnRouteEntry._ID + " = ?",
+                    new String[]{ Long.toString(ContentUris.parseId(uri)) }, sortOrder);
                 break;
 
             case LOG_ENTRIES_FOR_WILDLIFE: {
                 String wildlifeId = WalksContract.LogEntry.getWildifeIdFromURI(uri);
-                rtnCursor = mOpenHelper.getReadableDatabase().query(
-                    WalksContract.LogEntry.TABLE_NAME,
-                    projection,
-                    WalksContract.LogEntry.COLUMN_WILDLIFE_KEY + " = '" + wildlifeId + "'",
-                    null,
-                    null,
-                    null,
-                    sortOrder);
+                rtnCursor = queryTable(match, WalksContract.LogEntry.TABLE_NAME,
+                    projection, WalksContract.LogEntry.COLUMN_WILDLIFE_KEY + " = ?",
+                    new String[]{ wildlifeId }, sortOrder);
                 }
                 break;
 
             case WILDLIFE_THAT_HAVE_LOG_ENTRIES: {
-                String query = "SELECT wildlife._ID, " +
-                        "wildlife.name, " +
-                        "wildlife.image_name, " +
-                        "count(*) AS num_log_entries " +
-                        "FROM wildlife " +
-                        "INNER JOIN log_entry ON wildlife._ID = log_entry.wildlife_id " +
-                        "GROUP BY wildlife._ID;";
-                rtnCursor = mOpenHelper.getReadableDatabase().rawQuery(query, null);
+                rtnCursor = rawQuery(QueryTemplates.key(match, null, null, null), new QueryTemplates.Builder() {
+                    @Override
+                    public String build() {
+                        return "SELECT wildlife._ID, " +
+                                "wildlife.name, " +
+                                "wildlife.image_name, " +
+                                "count(*) AS num_log_entries " +
+                                "FROM wildlife " +
+                                "INNER JOIN log_entry ON wildlife._ID = log_entry.wildlife_id " +
+                                "GROUP BY wildlife._ID;";
+                    }
+                }, null);
                 }
                 break;
             case LOG_ENTRY:
-                rtnCursor = mOpenHelper.getReadableDatabase().query(
-                    WalksContract.LogEntry.TABLE_NAME,
-                    projection,
-                    selection,
-                    selectionArgs,
-                    null,
-                    null,
-                    sortOrder);
+                rtnCursor = queryTable(match, WalksContract.LogEntry.TABLE_NAME,
+                    projection, selection, selectionArgs, sortOrder);
                 break;
             case LOG_ENTRY_ID:
-                rtnCursor = mOpenHelper.getReadableDatabase().query(
-                    WalksContract.LogEntry.TABLE_NAME,
-                    projection,
-                    WalksContract.LogEntry._ID + " = '" + ContentUris.parseId(uri) + "'",
-                    null,
-                    null,
-                    null,
-                    sortOrder);
+                rtnCursor = queryTable(match, WalksContract.LogEntry.TABLE_NAME,
+                    projection, WalksContract.LogEntry._ID + " = ?",
+                    new String[]{ Long.toString(ContentUris.parseId(uri)) }, sortOrder);
+                break;
+            case LOG_ENTRIES_IN_BOUNDS:
+                rtnCursor = queryLogEntriesInBounds(uri, projection, selection, selectionArgs, sortOrder);
+                break;
+            case LOG_ENTRIES_NEAR:
+                rtnCursor = queryLogEntriesNear(uri, projection, selection, selectionArgs, sortOrder);
                 break;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
@@ -356,6 +370,18 @@ public class WalksProvider extends ContentProvider {
         return rtnCursor;
     }
 
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        if (WalksContract.METHOD_SQL_TEMPLATE_STATS.equals(method)) {
+            Bundle rtn = new Bundle();
+            rtn.putLong(WalksContract.KEY_SQL_TEMPLATE_HITS, mTemplates.getTemplateHits());
+            rtn.putLong(WalksContract.KEY_SQL_TEMPLATE_MISSES, mTemplates.getTemplateMisses());
+            rtn.putInt(WalksContract.KEY_SQL_TEMPLATES, mTemplates.size());
+            return rtn;
+        }
+        return super.call(method, arg, extras);
+    }
+
     @Override
     public String getType(Uri uri) {
         final int match = sUriMatcher.match(uri);
@@ -367,6 +393,14 @@ public class WalksProvider extends ContentProvider {
             case ROUTE_ID:
                 mimeType = WalksContract.RouteEntry.CONTENT_ITEM_TYPE;
                 break;
+            case ROUTE_DETAIL:
+                // a row for the route, one for the area and one for each wildlife
+                mimeType = WalksContract.RouteEntry.CONTENT_TYPE;
+                break;
+            case ROUTES_IN_BOUNDS:
+            case ROUTES_NEAREST:
+                mimeType = WalksContract.RouteEntry.CONTENT_TYPE;
+                break;
             case AREAS_FOR_ROUTE:
                 mimeType = WalksContract.AreaEntry.CONTENT_TYPE;
                 break;
@@ -380,6 +414,7 @@ public class WalksProvider extends ContentProvider {
                 mimeType = WalksContract.AreaEntry.CONTENT_ITEM_TYPE;
                 break;
             case ROUTES_FOR_AREA:
+            case ROUTES_FOR_AREAS:
                 mimeType = WalksContract.RouteEntry.CONTENT_TYPE;
                 break;
             case WILDLIFE:
@@ -392,6 +427,8 @@ public class WalksProvider extends ContentProvider {
                 mimeType = WalksContract.RouteEntry.CONTENT_TYPE;
                 break;
             case LOG_ENTRY:
+            case LOG_ENTRIES_IN_BOUNDS:
+            case LOG_ENTRIES_NEAR:
                 mimeType = WalksContract.LogEntry.CONTENT_TYPE;
                 break;
             case LOG_ENTRY_ID:
@@ -450,7 +487,7 @@ public class WalksProvider extends ContentProvider {
                 }
             } break;
             case LOG_ENTRY: {
-                long id = db.insert(WalksContract.LogEntry.TABLE_NAME, null, values);
+                long id = db.insert(WalksContract.LogEntry.TABLE_NAME, null, withGeoHash(values));
                 if (id > 0) {
                     rtnUri = WalksContract.LogEntry.buildLogEntrysUri(id);
                 } else {
@@ -460,7 +497,7 @@ public class WalksProvider extends ContentProvider {
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
-        getContext().getContentResolver().notifyChange(uri, null);
+        notifyChange(uri);
         return rtnUri;
     }
 
@@ -492,7 +529,7 @@ public class WalksProvider extends ContentProvider {
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
         if (selection == null || rowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
         return rowsDeleted;
     }
@@ -519,20 +556,566 @@ public class WalksProvider extends ContentProvider {
                 rowsUpdated = db.update(WalksContract.WildlifeOnRouteEntry.TABLE_NAME, values, selection, selectionArgs);
                 break;
             case LOG_ENTRY:
-                rowsUpdated = db.update(WalksContract.LogEntry.TABLE_NAME, values, selection, selectionArgs);
+                rowsUpdated = db.update(WalksContract.LogEntry.TABLE_NAME, withGeoHash(values), selection, selectionArgs);
                 break;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
         if (rowsUpdated != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
         return rowsUpdated;
     }
 
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        // apply all the operations in one transaction and hold the notifications until it commits
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        Set<Uri> changes = new HashSet<Uri>();
+        mBatchChanges.set(changes);
+        ContentProviderResult[] results;
+        db.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            mBatchChanges.remove();
+        }
+        for (Uri uri : changes) {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+        return results;
+    }
+
     @Override
     public int bulkInsert(Uri uri, ContentValues[] values) {
-        // TODO: override bulktransactions for when we are parsing json
-        return super.bulkInsert(uri, values);
+        final String tableName;
+        switch (sUriMatcher.match(uri)) {
+            case ROUTE:
+                tableName = WalksContract.RouteEntry.TABLE_NAME;
+                break;
+            case AREA:
+                tableName = WalksContract.AreaEntry.TABLE_NAME;
+                break;
+            case ROUTE_IN_AREA:
+                tableName = WalksContract.RouteInAreaEntry.TABLE_NAME;
+                break;
+            case WILDLIFE:
+                tableName = WalksContract.WildlifeEntry.TABLE_NAME;
+                break;
+            case WILDLIFE_ON_ROUTE:
+                tableName = WalksContract.WildlifeOnRouteEntry.TABLE_NAME;
+                break;
+            case LOG_ENTRY:
+                tableName = WalksContract.LogEntry.TABLE_NAME;
+                values = values.clone();
+                for (int idx = 0; idx < values.length; ++idx) {
+                    values[idx] = withGeoHash(values[idx]);
+                }
+                break;
+            default:
+                throw new UnsupportedOperationException("Unknown uri: " + uri);
+        }
+
+        // insert every row in one transaction, compiling the insert once per set of columns
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        Map<String, CompiledInsert> statements = new HashMap<String, CompiledInsert>();
+        CompiledInsert statement = null;
+        int rowsInserted = 0;
+        db.beginTransaction();
+        try {
+            for (ContentValues rowValues : values) {
+                if (statement == null || !statement.matches(rowValues)) {
+                    String signature = CompiledInsert.signature(rowValues);
+                    statement = statements.get(signature);
+                    if (statement == null) {
+                        statement = new CompiledInsert(db, tableName, rowValues);
+                        statements.put(signature, statement);
+                    }
+                }
+                if (statement.insert(rowValues) <= 0) {
+                    throw new SQLException("Failed to insert row into " + uri);
+                }
+                ++rowsInserted;
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            for (CompiledInsert compiled : statements.values()) {
+                compiled.close();
+            }
+        }
+        if (rowsInserted > 0) {
+            notifyChange(uri);
+        }
+        return rowsInserted;
+    }
+
+    private void notifyChange(Uri uri) {
+        int match = sUriMatcher.match(uri);
+        if (match == ROUTE || match == ROUTE_ID) {
+            synchronized (this) {
+                mRouteIndex = null;
+            }
+        }
+        Set<Uri> batchChanges = mBatchChanges.get();
+        if (batchChanges != null) {
+            batchChanges.add(uri);
+        } else {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+    }
+
+    /*
+     * The routes whose bounding box overlaps the box in the uri's query parameters.
+     * Uses the route_bbox r*tree when the database has one, otherwise the
+     * bounding box index on the route table.
+     */
+    private Cursor queryRoutesInBounds(Uri uri, final String[] projection, final String selection,
+                                       String[] selectionArgs, final String sortOrder) {
+        final int match = ROUTES_IN_BOUNDS;
+        String[] bounds = new String[] {
+                getDoubleParameter(uri, WalksContract.RouteEntry.PARAM_MAX_LAT),
+                getDoubleParameter(uri, WalksContract.RouteEntry.PARAM_MIN_LAT),
+                getDoubleParameter(uri, WalksContract.RouteEntry.PARAM_MAX_LNG),
+                getDoubleParameter(uri, WalksContract.RouteEntry.PARAM_MIN_LNG)
+        };
+        final boolean hasRouteBBox = mOpenHelper.hasRouteBBox();
+        String key = QueryTemplates.key(match, projection, selection, sortOrder, hasRouteBBox);
+        String[] args = TextUtils.isEmpty(selection) ? bounds : appendArgs(bounds, selectionArgs);
+        return rawQuery(key, new QueryTemplates.Builder() {
+            @Override
+            public String build() {
+                String boxTable = hasRouteBBox
+                        ? WalksSchema.ROUTE_BBOX_TABLE
+                        : WalksContract.RouteEntry.TABLE_NAME;
+                String query = "SELECT " + selectColumns("route", projection, "route.*") + " " +
+                        "FROM route " +
+                        (hasRouteBBox ? "INNER JOIN route_bbox ON route_bbox._id = route._id " : "") +
+                        "WHERE " + boxTable + ".min_lat <= ? " +
+                        "AND " + boxTable + ".max_lat >= ? " +
+                        "AND " + boxTable + ".min_lng <= ? " +
+                        "AND " + boxTable + ".max_lng >= ?";
+                if (!TextUtils.isEmpty(selection)) {
+                    query += " AND (" + selection + ")";
+                }
+                if (!TextUtils.isEmpty(sortOrder)) {
+                    query += " ORDER BY " + sortOrder;
+                }
+                return query;
+            }
+        }, args);
+    }
+
+    /*
+     * The route, then the area in the uri's query parameters, then the wildlife on
+     * the route, as one cursor so the detail screen loads in one go.  Each row has
+     * a detail section column to say which it is.  The projection is for the route
+     * row, the area and wildlife rows have all their columns.  A MergeCursor only
+     * finds the columns of the section it is on within this process, which is why
+     * the provider isn't exported.
+     */
+    private Cursor queryRouteDetail(Uri uri, final String[] projection) {
+        String routeId = WalksContract.RouteEntry.getRouteFromUri(uri);
+        String areaId = Long.toString((long) getDoubleParameter(uri, WalksContract.RouteEntry.PARAM_AREA, -1));
+
+        // each part is read before the next is queried, one of them failing closes the rest
+        Cursor[] cursors = new Cursor[3];
+        try {
+            cursors[0] = rawQuery(QueryTemplates.key(ROUTE_DETAIL, projection, null, null, "route"),
+                    new QueryTemplates.Builder() {
+                @Override
+                public String build() {
+                    return "SELECT " + WalksContract.RouteEntry.DETAIL_SECTION_ROUTE + " AS " +
+                            WalksContract.RouteEntry.COLUMN_DETAIL_SECTION + ", " +
+                            selectColumns("route", projection, "route.*") + " " +
+                            "FROM route " +
+                            "WHERE route._id = ?";
+                }
+            }, new String[]{ routeId });
+            cursors[0].getCount();
+            cursors[1] = rawQuery(QueryTemplates.key(ROUTE_DETAIL, null, null, null, "area"),
+                    new QueryTemplates.Builder() {
+                @Override
+                public String build() {
+                    return "SELECT " + WalksContract.RouteEntry.DETAIL_SECTION_AREA + " AS " +
+                            WalksContract.RouteEntry.COLUMN_DETAIL_SECTION + ", area.* " +
+                            "FROM area " +
+                            "WHERE area._id = ?";
+                }
+            }, new String[]{ areaId });
+            cursors[1].getCount();
+            cursors[2] = rawQuery(QueryTemplates.key(ROUTE_DETAIL, null, null, null, "wildlife"),
+                    new QueryTemplates.Builder() {
+                @Override
+                public String build() {
+                    return "SELECT " + WalksContract.RouteEntry.DETAIL_SECTION_WILDLIFE + " AS " +
+                            WalksContract.RouteEntry.COLUMN_DETAIL_SECTION + ", wildlife.* " +
+                            "FROM wildlife_on_route " +
+                            "INNER JOIN wildlife ON wildlife._id = wildlife_on_route.wildlife_id " +
+                            "WHERE wildlife_on_route.route_id = ?";
+                }
+            }, new String[]{ routeId });
+            cursors[2].getCount();
+        } catch (RuntimeException e) {
+            for (Cursor cursor : cursors) {
+                if (cursor != null) {
+                    cursor.close();
+                }
+            }
+            throw e;
+        }
+        return new MergeCursor(cursors);
+    }
+
+    /*
+     * Up to limit routes nearest to the point in the uri's query parameters, nearest
+     * first, with a distance column in metres to the nearest part of each route.
+     * The routes are picked by a RouteIndex over every route's path, the selection
+     * only filters the routes that were picked.
+     */
+    private Cursor queryNearestRoutes(Uri uri, final String[] projection, final String selection,
+                                      String[] selectionArgs, final String sortOrder) {
+        double lat = Double.parseDouble(getDoubleParameter(uri, WalksContract.RouteEntry.PARAM_LAT));
+        double lng = Double.parseDouble(getDoubleParameter(uri, WalksContract.RouteEntry.PARAM_LNG));
+        int limit = (int) getDoubleParameter(uri, WalksContract.RouteEntry.PARAM_LIMIT, DEFAULT_NEAREST_LIMIT);
+        double maxDistance = getDoubleParameter(uri, WalksContract.RouteEntry.PARAM_MAX_DISTANCE,
+                Double.POSITIVE_INFINITY);
+        final List<RouteIndex.Neighbour> nearest = findNearestRoutes(lat, lng, limit, maxDistance);
+
+        // the distance is worked out here, so it comes from a CASE on the route id,
+        // bound with the ids in the order the placeholders appear
+        String[] args = new String[3 * nearest.size()];
+        for (int idx = 0; idx < nearest.size(); ++idx) {
+            RouteIndex.Neighbour neighbour = nearest.get(idx);
+            args[2 * idx] = Long.toString(neighbour.getRoute().getId());
+            args[2 * idx + 1] = Double.toString(neighbour.getDistanceMetres());
+            args[2 * nearest.size() + idx] = args[2 * idx];
+        }
+        if (!TextUtils.isEmpty(selection)) {
+            args = appendArgs(args, selectionArgs);
+        }
+
+        String key = QueryTemplates.key(ROUTES_NEAREST, projection, selection, sortOrder, nearest.size());
+        return rawQuery(key, new QueryTemplates.Builder() {
+            @Override
+            public String build() {
+                StringBuilder ids = new StringBuilder();
+                StringBuilder distance = new StringBuilder("CASE route._id");
+                for (int idx = 0; idx < nearest.size(); ++idx) {
+                    ids.append(idx > 0 ? ", ?" : "?");
+                    distance.append(" WHEN ? THEN CAST(? AS REAL)");
+                }
+                distance.append(" END AS ").append(WalksContract.RouteEntry.COLUMN_DISTANCE);
+                if (nearest.isEmpty()) {
+                    distance = new StringBuilder("NULL AS ").append(WalksContract.RouteEntry.COLUMN_DISTANCE);
+                }
+
+                String columns = "route.*";
+                if (projection != null) {
+                    List<String> routeColumns = new ArrayList<String>();
+                    for (String column : projection) {
+                        if (!WalksContract.RouteEntry.COLUMN_DISTANCE.equals(column)) {
+                            routeColumns.add(column);
+                        }
+                    }
+                    columns = selectColumns("route", routeColumns.toArray(new String[routeColumns.size()]), "route.*");
+                }
+                String query = "SELECT " + (columns.length() > 0 ? columns + ", " : "") + distance + " " +
+                        "FROM route " +
+                        "WHERE route._id IN (" + ids + ")";
+                if (!TextUtils.isEmpty(selection)) {
+                    query += " AND (" + selection + ")";
+                }
+                query += " ORDER BY " + (TextUtils.isEmpty(sortOrder) ? WalksContract.RouteEntry.COLUMN_DISTANCE : sortOrder);
+                return query;
+            }
+        }, args);
+    }
+
+    // loads every route's path into a RouteIndex the first time it is asked
+    private synchronized List<RouteIndex.Neighbour> findNearestRoutes(double lat, double lng, int limit,
+                                                                     double maxDistanceMetres) {
+        if (mRouteIndex == null) {
+            Cursor cursor = mOpenHelper.getReadableDatabase().query(WalksContract.RouteEntry.TABLE_NAME,
+                    new String[]{ WalksContract.RouteEntry._ID, WalksContract.RouteEntry.COLUMN_COORDINATES },
+                    null, null, null, null, null);
+            try {
+                mRouteIndex = new RouteIndex(Route.fromCursor(cursor));
+            } finally {
+                cursor.close();
+            }
+        }
+        return mRouteIndex.findNearestRoutes(lat, lng, limit, maxDistanceMetres);
+    }
+
+    /*
+     * The log entries inside the box in the uri's query parameters.  The geohash
+     * index finds the entries in the few cells that cover the box, then lat and
+     * lng are checked against the box itself.  A box with its min after its max
+     * is rejected like any other bad parameter.
+     */
+    private Cursor queryLogEntriesInBounds(Uri uri, String[] projection, String selection,
+                                           String[] selectionArgs, String sortOrder) {
+        double minLat = Double.parseDouble(getDoubleParameter(uri, WalksContract.LogEntry.PARAM_MIN_LAT));
+        double minLng = Double.parseDouble(getDoubleParameter(uri, WalksContract.LogEntry.PARAM_MIN_LNG));
+        double maxLat = Double.parseDouble(getDoubleParameter(uri, WalksContract.LogEntry.PARAM_MAX_LAT));
+        double maxLng = Double.parseDouble(getDoubleParameter(uri, WalksContract.LogEntry.PARAM_MAX_LNG));
+        if (!(minLat <= maxLat && minLng <= maxLng)) {
+            throw new IllegalArgumentException("Invalid bounds in " + uri);
+        }
+        return queryLogEntriesInBox(LOG_ENTRIES_IN_BOUNDS, minLat, minLng, maxLat, maxLng, null, null,
+                projection, selection, selectionArgs, sortOrder, null);
+    }
+
+    /*
+     * The log entries within the radius in metres of the point in the uri's query
+     * parameters, nearest first unless there is a sort order.  The box around the
+     * circle is looked up like the bounds uri, then the distance is measured on a
+     * flat projection around the point.
+     */
+    private Cursor queryLogEntriesNear(Uri uri, String[] projection, String selection,
+                                       String[] selectionArgs, String sortOrder) {
+        double lat = Double.parseDouble(getDoubleParameter(uri, WalksContract.LogEntry.PARAM_LAT));
+        double lng = Double.parseDouble(getDoubleParameter(uri, WalksContract.LogEntry.PARAM_LNG));
+        double radius = Double.parseDouble(getDoubleParameter(uri, WalksContract.LogEntry.PARAM_RADIUS));
+        if (!(radius >= 0.0)) {
+            throw new IllegalArgumentException("Invalid " + WalksContract.LogEntry.PARAM_RADIUS + " in " + uri);
+        }
+        double lngScale = Math.cos(Math.toRadians(lat));
+        double latRadius = radius / METRES_PER_DEGREE;
+        double lngRadius = latRadius / Math.max(lngScale, 1e-6);
+
+        // squared distance in degrees of latitude, sqlite doesn't have sqrt, the limit is
+        // cast as the args are bound as text and any number is less than any text
+        String distance = "((lat - ?) * (lat - ?) + (lng - ?) * (lng - ?) * ?)";
+        String[] distanceArgs = new String[] {
+                Double.toString(lat), Double.toString(lat), Double.toString(lng), Double.toString(lng),
+                Double.toString(lngScale * lngScale)
+        };
+        boolean byDistance = TextUtils.isEmpty(sortOrder);
+        return queryLogEntriesInBox(LOG_ENTRIES_NEAR, lat - latRadius, lng - lngRadius, lat + latRadius,
+                lng + lngRadius, distance + " <= CAST(? AS REAL)",
+                appendArgs(distanceArgs, new String[]{ Double.toString(latRadius * latRadius) }),
+                projection, selection, selectionArgs,
+                byDistance ? distance : sortOrder, byDistance ? distanceArgs : null);
+    }
+
+    /*
+     * The log entries in the box and the within clause, bound with withinArgs, then
+     * the selection and the sort order, bound with sortArgs.
+     */
+    private Cursor queryLogEntriesInBox(int match, double minLat, double minLng, double maxLat, double maxLng,
+                                        final String within, String[] withinArgs,
+                                        final String[] projection, final String selection, String[] selectionArgs,
+                                        final String sortOrder, String[] sortArgs) {
+        final long[] ranges = GeoHash.coveringRanges(minLat, minLng, maxLat, maxLng, MAX_GEOHASH_CELLS);
+        String key = QueryTemplates.key(match, projection, selection, sortOrder, ranges.length / 2);
+        QueryTemplates.Builder builder = new QueryTemplates.Builder() {
+            @Override
+            public String build() {
+                StringBuilder where = new StringBuilder("(");
+                for (int idx = 0; idx < ranges.length; idx += 2) {
+                    if (idx > 0) {
+                        where.append(" OR ");
+                    }
+                    where.append("geohash BETWEEN ? AND ?");
+                }
+                where.append(") AND lat BETWEEN ? AND ? AND lng BETWEEN ? AND ?");
+                if (within != null) {
+                    where.append(" AND ").append(within);
+                }
+                if (!TextUtils.isEmpty(selection)) {
+                    where.append(" AND (").append(selection).append(")");
+                }
+                return SQLiteQueryBuilder.buildQueryString(false, WalksContract.LogEntry.TABLE_NAME,
+                        projection, where.toString(), null, null, sortOrder, null);
+            }
+        };
+
+        String[] args = new String[ranges.length + 4];
+        for (int idx = 0; idx < ranges.length; ++idx) {
+            args[idx] = Long.toString(ranges[idx]);
+        }
+        args[ranges.length] = Double.toString(minLat);
+        args[ranges.length + 1] = Double.toString(maxLat);
+        args[ranges.length + 2] = Double.toString(minLng);
+        args[ranges.length + 3] = Double.toString(maxLng);
+        args = appendArgs(args, withinArgs);
+        if (!TextUtils.isEmpty(selection)) {
+            args = appendArgs(args, selectionArgs);
+        }
+        args = appendArgs(args, sortArgs);
+        return rawQuery(key, builder, args);
+    }
+
+    /*
+     * A table queried with where and its args, the sql is the same for every
+     * query with the same match, projection, where and sort order.
+     */
+    private Cursor queryTable(int match, final String table, final String[] projection, final String where,
+                              String[] whereArgs, final String sortOrder) {
+        return rawQuery(QueryTemplates.key(match, projection, where, sortOrder), new QueryTemplates.Builder() {
+            @Override
+            public String build() {
+                return SQLiteQueryBuilder.buildQueryString(false, table, projection, where,
+                        null, null, sortOrder, null);
+            }
+        }, whereArgs);
+    }
+
+    // the sql for the key, built the first time and looked up after that
+    private Cursor rawQuery(String key, QueryTemplates.Builder builder, String[] args) {
+        return mOpenHelper.getReadableDatabase().rawQuery(mTemplates.get(key, builder), args);
+    }
+
+    private static String[] appendArgs(String[] args, String[] more) {
+        if (more == null || more.length == 0) {
+            return args;
+        }
+        String[] rtn = Arrays.copyOf(args, args.length + more.length);
+        System.arraycopy(more, 0, rtn, args.length, more.length);
+        return rtn;
+    }
+
+    /*
+     * A copy of a log entry's values with the geohash of its lat and lng.  The two
+     * have to be written together or the geohash would go out of step.
+     */
+    private static ContentValues withGeoHash(ContentValues values) {
+        boolean hasLat = values.containsKey(WalksContract.LogEntry.COLUMN_LAT);
+        boolean hasLng = values.containsKey(WalksContract.LogEntry.COLUMN_LNG);
+        if (hasLat != hasLng) {
+            throw new IllegalArgumentException("A log entry's lat and lng must be written together");
+        }
+        if (!hasLat) {
+            return values;
+        }
+        Double lat = values.getAsDouble(WalksContract.LogEntry.COLUMN_LAT);
+        Double lng = values.getAsDouble(WalksContract.LogEntry.COLUMN_LNG);
+        if (lat == null || lng == null) {
+            throw new IllegalArgumentException("Invalid log entry location " + values);
+        }
+        ContentValues rtn = new ContentValues(values);
+        rtn.put(WalksContract.LogEntry.COLUMN_LAT, lat);
+        rtn.put(WalksContract.LogEntry.COLUMN_LNG, lng);
+        rtn.put(WalksContract.LogEntry.COLUMN_GEOHASH, GeoHash.encode(lat, lng));
+        return rtn;
+    }
+
+    private static double getDoubleParameter(Uri uri, String name, double defaultValue) {
+        if (uri.getQueryParameter(name) == null) {
+            return defaultValue;
+        }
+        return Double.parseDouble(getDoubleParameter(uri, name));
+    }
+
+    private static String getDoubleParameter(Uri uri, String name) {
+        String value = uri.getQueryParameter(name);
+        try {
+            return Double.toString(Double.parseDouble(value));
+        } catch (NullPointerException e) {
+            throw new IllegalArgumentException("Missing " + name + " in " + uri);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + " in " + uri);
+        }
+    }
+
+    /*
+     * The select list for one of the joined queries.  Columns in the projection
+     * come from table unless they name their own table (e.g. route_in_area.area_id),
+     * with no projection every default column is returned.
+     */
+    private static String selectColumns(String table, String[] projection, String defaultColumns) {
+        if (projection == null) {
+            return defaultColumns;
+        }
+        StringBuilder rtn = new StringBuilder();
+        for (String column : projection) {
+            if (rtn.length() > 0) {
+                rtn.append(", ");
+            }
+            int dot = column.indexOf('.');
+            if (dot == -1) {
+                rtn.append(table).append('.').append(column).append(" AS ").append(column);
+            } else {
+                rtn.append(column).append(" AS ").append(column.substring(dot + 1));
+            }
+        }
+        return rtn.toString();
+    }
+
+    /**
+     * An INSERT statement compiled for one table and one set of columns
+     * so it can be rebound for every row of a bulk insert.
+     */
+    private static class CompiledInsert {
+        private final String[] mColumns;
+        private final SQLiteStatement mStatement;
+
+        CompiledInsert(SQLiteDatabase db, String tableName, ContentValues values) {
+            mColumns = sortedColumns(values);
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(tableName).append(" (");
+            StringBuilder params = new StringBuilder();
+            for (int idx = 0; idx < mColumns.length; ++idx) {
+                if (idx > 0) {
+                    sql.append(", ");
+                    params.append(", ");
+                }
+                sql.append(mColumns[idx]);
+                params.append('?');
+            }
+            sql.append(") VALUES (").append(params).append(");");
+            mStatement = db.compileStatement(sql.toString());
+        }
+
+        static String signature(ContentValues values) {
+            return TextUtils.join(",", sortedColumns(values));
+        }
+
+        boolean matches(ContentValues values) {
+            if (values.size() != mColumns.length) return false;
+            for (String column : mColumns) {
+                if (!values.containsKey(column)) return false;
+            }
+            return true;
+        }
+
+        long insert(ContentValues values) {
+            mStatement.clearBindings();
+            for (int idx = 0; idx < mColumns.length; ++idx) {
+                bind(idx + 1, values.get(mColumns[idx]));
+            }
+            return mStatement.executeInsert();
+        }
+
+        void close() {
+            mStatement.close();
+        }
+
+        private void bind(int index, Object value) {
+            if (value == null) {
+                mStatement.bindNull(index);
+            } else if (value instanceof Double || value instanceof Float) {
+                mStatement.bindDouble(index, ((Number) value).doubleValue());
+            } else if (value instanceof Number) {
+                mStatement.bindLong(index, ((Number) value).longValue());
+            } else if (value instanceof Boolean) {
+                mStatement.bindLong(index, (Boolean) value ? 1 : 0);
+            } else if (value instanceof byte[]) {
+                mStatement.bindBlob(index, (byte[]) value);
+            } else {
+                mStatement.bindString(index, value.toString());
+            }
+        }
+
+        private static String[] sortedColumns(ContentValues values) {
+            Set<String> keys = values.keySet();
+            String[] columns = keys.toArray(new String[keys.size()]);
+            Arrays.sort(columns);
+            return columns;
+        }
     }
 }
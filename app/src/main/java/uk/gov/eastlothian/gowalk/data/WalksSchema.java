@@ -0,0 +1,195 @@
+package uk.gov.eastlothian.gowalk.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The sql that creates the walks database.
+ *
+ * This is plain java so the walksdb module can build walks.db with it when
+ * the app is built.  The table and column names match WalksContract.
+ *
+ * Created by davidmorrison on 20/11/14.
+ */
+public class WalksSchema {
+
+    // the version of the schema and reference data, stored as the user_version of walks.db
+    // 1 - initial release
+    // 2 - route bounding boxes
+    // 3 - route coordinates stored as PathCodec blobs
+    // 4 - simplified route coordinates for the zoomed out map
+    // 5 - index on the route bounding boxes
+    // 6 - route centre, ends, point count and measured length
+    // 7 - log entry coordinates stored as numbers with a geohash
+    // 8 - indexes declared with their tables, unique indexes both ways round the junction tables
+    // 9 - route bounding box, centre and ends are NULL for a route without any geometry
+    public static final int VERSION = 9;
+
+    // Geographical Data
+    private static final TableBuilder ROUTE_TABLE =
+            new TableBuilder("route", "_id")
+                    .addIntegerColumn("route_number")
+                    .addBlobColumn("coordinates")
+                    .addBlobColumn("coordinates_low")
+                    .addBlobColumn("coordinates_medium")
+                    .addTextColumn("path_type")
+                    .addTextColumn("length")
+                    .addTextColumn("surface")
+                    .addTextColumn("description")
+                    .addTextColumn("primary_area")
+                    // NULL for a route without any geometry
+                    .addNullableRealColumn("min_lat")
+                    .addNullableRealColumn("min_lng")
+                    .addNullableRealColumn("max_lat")
+                    .addNullableRealColumn("max_lng")
+                    .addNullableRealColumn("centre_lat")
+                    .addNullableRealColumn("centre_lng")
+                    .addNullableRealColumn("start_lat")
+                    .addNullableRealColumn("start_lng")
+                    .addNullableRealColumn("end_lat")
+                    .addNullableRealColumn("end_lng")
+                    .addIntegerColumn("point_count")
+                    .addRealColumn("measured_length")
+                    .addIndex("route_route_number_idx", "route_number")
+                    .addIndex("route_bbox_idx", "min_lat", "max_lat", "min_lng", "max_lng")
+                    .addIndex("route_centre_idx", "centre_lat", "centre_lng")
+                    .addIndex("route_measured_length_idx", "measured_length");
+
+    private static final TableBuilder AREA_TABLE =
+            new TableBuilder("area", "_id")
+                    .addTextColumn("name");
+
+    // both ways round so the joins from an area and from a route only read the index
+    private static final TableBuilder ROUTE_IN_AREA_TABLE =
+            new TableBuilder("route_in_area", "_id")
+                    .addIntegerColumn("route_id")
+                    .addIntegerColumn("area_id")
+                    .addUniqueIndex("route_in_area_area_route_idx", "area_id", "route_id")
+                    .addUniqueIndex("route_in_area_route_area_idx", "route_id", "area_id");
+
+    // Wildlife Data
+    private static final TableBuilder WILDLIFE_TABLE =
+            new TableBuilder("wildlife", "_id")
+                    .addTextColumn("name")
+                    .addTextColumn("category")
+                    .addTextColumn("description")
+                    .addTextColumn("image_name")
+                    .addTextColumn("when_seen");
+
+    private static final TableBuilder WILDLIFE_ON_ROUTE_TABLE =
+            new TableBuilder("wildlife_on_route", "_id")
+                    .addIntegerColumn("wildlife_id")
+                    .addIntegerColumn("route_id")
+                    .addForeignKey("wildlife_id", "wildlife", "_id")
+                    .addForeignKey("route_id", "route", "_id")
+                    .addUniqueIndex("wildlife_on_route_route_wildlife_idx", "route_id", "wildlife_id")
+                    .addUniqueIndex("wildlife_on_route_wildlife_route_idx", "wildlife_id", "route_id");
+
+    // User Generated Content
+    private static final TableBuilder LOG_ENTRY_TABLE =
+            new TableBuilder("log_entry", "_id")
+                    .addIntegerColumn("wildlife_id")
+                    .addRealColumn("lat")
+                    .addRealColumn("lng")
+                    .addIntegerColumn("geohash")
+                    .addTextColumn("datetime")
+                    .addTextColumn("weather")
+                    .addTextColumn("image")
+                    .addForeignKey("wildlife_id", "wildlife", "_id")
+                    .addIndex("log_entry_wildlife_idx", "wildlife_id")
+                    .addIndex("log_entry_geohash_idx", "geohash");
+
+    private static final TableBuilder[] TABLE_BUILDERS = {
+            ROUTE_TABLE, AREA_TABLE, ROUTE_IN_AREA_TABLE, WILDLIFE_TABLE, WILDLIFE_ON_ROUTE_TABLE, LOG_ENTRY_TABLE
+    };
+
+    public static final String SQL_CREATE_ROUTE_TABLE = ROUTE_TABLE.buildQuery();
+    public static final String SQL_CREATE_AREA_TABLE = AREA_TABLE.buildQuery();
+    public static final String SQL_CREATE_ROUTE_IN_AREA_TABLE = ROUTE_IN_AREA_TABLE.buildQuery();
+    public static final String SQL_CREATE_WILDLIFE_TABLE = WILDLIFE_TABLE.buildQuery();
+    public static final String SQL_CREATE_WILDLIFE_ON_ROUTE_TABLE = WILDLIFE_ON_ROUTE_TABLE.buildQuery();
+    public static final String SQL_CREATE_LOG_ENTRY_TABLE = LOG_ENTRY_TABLE.buildQuery();
+
+    public static final String[] CREATE_TABLES = {
+            SQL_CREATE_ROUTE_TABLE,
+            SQL_CREATE_AREA_TABLE,
+            SQL_CREATE_ROUTE_IN_AREA_TABLE,
+            SQL_CREATE_WILDLIFE_TABLE,
+            SQL_CREATE_WILDLIFE_ON_ROUTE_TABLE,
+            SQL_CREATE_LOG_ENTRY_TABLE
+    };
+
+    // indexes on the columns the content provider joins and filters on, the app
+    // checks they are all there whenever it opens the database
+    public static final String[] CREATE_INDEXES;
+    public static final String[] INDEX_NAMES;
+    static {
+        List<String> createIndexes = new ArrayList<String>();
+        List<String> indexNames = new ArrayList<String>();
+        for (TableBuilder table : TABLE_BUILDERS) {
+            createIndexes.addAll(table.buildIndexQueries());
+            indexNames.addAll(table.getIndexNames());
+        }
+        CREATE_INDEXES = createIndexes.toArray(new String[createIndexes.size()]);
+        INDEX_NAMES = indexNames.toArray(new String[indexNames.size()]);
+    }
+
+    // indexes made by earlier versions that the ones above replace
+    public static final String[] DROPPED_INDEXES = {
+            "route_in_area_area_idx",
+            "route_in_area_route_idx",
+            "wildlife_on_route_route_idx",
+            "wildlife_on_route_wildlife_idx"
+    };
+
+    // r*tree of the route bounding boxes, kept in step with the route table by triggers.
+    // not part of walks.db because not every device's sqlite has the rtree module, the
+    // app creates it when it can (the rtree rounds the boxes outwards to floats)
+    public static final String ROUTE_BBOX_TABLE = "route_bbox";
+    public static final String[] CREATE_ROUTE_BBOX = {
+            "CREATE VIRTUAL TABLE IF NOT EXISTS route_bbox USING rtree(_id, min_lat, max_lat, min_lng, max_lng);",
+            "DELETE FROM route_bbox;",
+            "INSERT INTO route_bbox SELECT _id, min_lat, max_lat, min_lng, max_lng FROM route "
+                    + "WHERE min_lat IS NOT NULL;",
+            "CREATE TRIGGER IF NOT EXISTS route_bbox_insert AFTER INSERT ON route "
+                    + "WHEN new.min_lat IS NOT NULL BEGIN "
+                    + "INSERT OR REPLACE INTO route_bbox "
+                    + "VALUES (new._id, new.min_lat, new.max_lat, new.min_lng, new.max_lng); END;",
+            "CREATE TRIGGER IF NOT EXISTS route_bbox_update AFTER UPDATE ON route BEGIN "
+                    + "DELETE FROM route_bbox WHERE _id = old._id; "
+                    + "INSERT OR REPLACE INTO route_bbox SELECT new._id, new.min_lat, new.max_lat, "
+                    + "new.min_lng, new.max_lng WHERE new.min_lat IS NOT NULL; END;",
+            "CREATE TRIGGER IF NOT EXISTS route_bbox_delete AFTER DELETE ON route BEGIN "
+                    + "DELETE FROM route_bbox WHERE _id = old._id; END;"
+    };
+
+    // the tables that come from the source data, everything else belongs to the user
+    public static final String[] REFERENCE_TABLES = {
+            "route", "area", "route_in_area", "wildlife", "wildlife_on_route"
+    };
+
+    // the column that identifies a row of each reference table from one build of walks.db
+    // to the next, the _id is only the row's place in the source data so it can change
+    public static final String[][] REFERENCE_KEYS = {
+            { "route", "route_number" },
+            { "area", "name" },
+            { "wildlife", "name" }
+    };
+
+    // the junction tables, each with its two id columns and the tables they refer to
+    public static final String[][] REFERENCE_LINKS = {
+            { "route_in_area", "route_id", "route", "area_id", "area" },
+            { "wildlife_on_route", "wildlife_id", "wildlife", "route_id", "route" }
+    };
+
+    // the user's tables that refer to a reference table, each with its id column and the
+    // table it refers to, a reference row they use is kept even when a new build drops it
+    public static final String[][] USER_REFERENCES = {
+            { "log_entry", "wildlife_id", "wildlife" }
+    };
+
+    // all the tables, in the order they are created
+    public static final String[] TABLES = {
+            "route", "area", "route_in_area", "wildlife", "wildlife_on_route", "log_entry"
+    };
+}
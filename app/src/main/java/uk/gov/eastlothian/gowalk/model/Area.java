@@ -20,7 +20,7 @@ public class Area extends BaseRecord {
         this.name = name;
     }
 
-    private Area(Cursor cursor) {
+    Area(Cursor cursor) {
         this.id = getLong(cursor, AreaEntry._ID, -1);
         this.name = getString(cursor, AreaEntry.COLUMN_AREA_NAME, "");
     }
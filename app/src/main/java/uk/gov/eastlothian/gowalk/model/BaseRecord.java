@@ -21,10 +21,22 @@ public class BaseRecord {
         return cursor.getInt(index);
     }
 
+    protected static double getDouble(Cursor cursor, String name, double defaultValue) {
+        int index = cursor.getColumnIndex(name);
+        if(index == -1 || cursor.isNull(index)) return defaultValue;
+        return cursor.getDouble(index);
+    }
+
     protected static String getString(Cursor cursor, String name, String defaultValue) {
         int index = cursor.getColumnIndex(name);
         if(index == -1) return defaultValue;
         return cursor.getString(index);
     }
 
+    protected static byte[] getBlob(Cursor cursor, String name, byte[] defaultValue) {
+        int index = cursor.getColumnIndex(name);
+        if(index == -1 || cursor.isNull(index)) return defaultValue;
+        return cursor.getBlob(index);
+    }
+
 }
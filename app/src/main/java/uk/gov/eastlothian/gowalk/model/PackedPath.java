@@ -0,0 +1,254 @@
+package uk.gov.eastlothian.gowalk.model;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.maps.model.PolylineOptions;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * The geometry of a route held in primitive arrays rather than as a LatLng
+ * per point.
+ *
+ * A path is made of one or more parts (the lines of a MultiLineString), the
+ * points of every part are stored one after the other in the same arrays.
+ * LatLng objects are only made when they are asked for, asLatLngs gives a
+ * view of a part that can be handed to PolylineOptions or PolyUtil without
+ * copying the path first.
+ */
+public class PackedPath {
+
+    private static final PackedPath EMPTY = new PackedPath(new double[0], new double[0], new int[0]);
+
+    private final double[] lats;
+    private final double[] lngs;
+    private final int[] partStarts;
+    private final double minLat, minLng, maxLat, maxLng;
+
+    /**
+     * Walks the points of a path in order without making any objects.
+     *
+     *   PackedPath.PointCursor cursor = path.cursor();
+     *   while (cursor.moveToNext()) { ... cursor.getLat() ... }
+     */
+    public class PointCursor {
+        private int position = -1;
+        private int part = -1;
+
+        public boolean moveToNext() {
+            if (position + 1 >= lats.length) {
+                return false;
+            }
+            ++position;
+            while (part + 1 < partStarts.length && partStarts[part + 1] == position) {
+                ++part;
+            }
+            return true;
+        }
+
+        public int getPosition() {
+            return position;
+        }
+
+        public int getPart() {
+            return part;
+        }
+
+        // true if this point starts a new part, so there is no segment from the point before
+        public boolean isPartStart() {
+            return partStarts[part] == position;
+        }
+
+        public double getLat() {
+            return lats[position];
+        }
+
+        public double getLng() {
+            return lngs[position];
+        }
+    }
+
+    public PackedPath(double[] lats, double[] lngs, int[] partStarts) {
+        this.lats = lats;
+        this.lngs = lngs;
+        this.partStarts = partStarts;
+
+        double minLat = Double.NaN, minLng = Double.NaN, maxLat = Double.NaN, maxLng = Double.NaN;
+        for (int idx = 0; idx < lats.length; ++idx) {
+            if (idx == 0) {
+                minLat = maxLat = lats[idx];
+                minLng = maxLng = lngs[idx];
+            } else {
+                minLat = Math.min(minLat, lats[idx]);
+                maxLat = Math.max(maxLat, lats[idx]);
+                minLng = Math.min(minLng, lngs[idx]);
+                maxLng = Math.max(maxLng, lngs[idx]);
+            }
+        }
+        this.minLat = minLat;
+        this.minLng = minLng;
+        this.maxLat = maxLat;
+        this.maxLng = maxLng;
+    }
+
+    /**
+     * Decodes a PathCodec blob, a null or unreadable blob gives an empty path.
+     * PathCodec rejects a corrupt blob with an IllegalArgumentException.
+     */
+    public static PackedPath fromBlob(byte[] blob) {
+        if (blob == null) {
+            return EMPTY;
+        }
+        try {
+            int pointCount = PathCodec.getPointCount(blob);
+            double[] lats = new double[pointCount];
+            double[] lngs = new double[pointCount];
+            int[] partStarts = new int[PathCodec.getPartCount(blob)];
+            PathCodec.decode(blob, lats, lngs, partStarts);
+            return new PackedPath(lats, lngs, partStarts);
+        } catch (IllegalArgumentException e) {
+            return EMPTY;
+        }
+    }
+
+    public int size() {
+        return lats.length;
+    }
+
+    public boolean isEmpty() {
+        return lats.length == 0;
+    }
+
+    public double getLat(int idx) {
+        return lats[idx];
+    }
+
+    public double getLng(int idx) {
+        return lngs[idx];
+    }
+
+    public LatLng getLatLng(int idx) {
+        return new LatLng(lats[idx], lngs[idx]);
+    }
+
+    public PointCursor cursor() {
+        return new PointCursor();
+    }
+
+    // parts
+
+    public int getPartCount() {
+        return partStarts.length;
+    }
+
+    // index of the first point of a part
+    public int getPartStart(int part) {
+        return partStarts[part];
+    }
+
+    // index after the last point of a part
+    public int getPartEnd(int part) {
+        return part + 1 < partStarts.length ? partStarts[part + 1] : lats.length;
+    }
+
+    // segments, the lines between neighbouring points in the same part
+
+    public int getSegmentCount() {
+        int rtn = 0;
+        for (int part = 0; part < partStarts.length; ++part) {
+            rtn += Math.max(0, getPartEnd(part) - partStarts[part] - 1);
+        }
+        return rtn;
+    }
+
+    // index of the first point of a segment, the segment ends at the point after it
+    public int getSegmentStart(int segment) {
+        for (int part = 0; part < partStarts.length; ++part) {
+            int segments = Math.max(0, getPartEnd(part) - partStarts[part] - 1);
+            if (segment < segments) {
+                return partStarts[part] + segment;
+            }
+            segment -= segments;
+        }
+        throw new IndexOutOfBoundsException("No segment " + segment);
+    }
+
+    // bounding box, NaN for an empty path
+
+    public double getMinLat() {
+        return minLat;
+    }
+
+    public double getMinLng() {
+        return minLng;
+    }
+
+    public double getMaxLat() {
+        return maxLat;
+    }
+
+    public double getMaxLng() {
+        return maxLng;
+    }
+
+    // null for an empty path
+    public LatLngBounds getBounds() {
+        if (lats.length == 0) {
+            return null;
+        }
+        return new LatLngBounds(new LatLng(minLat, minLng), new LatLng(maxLat, maxLng));
+    }
+
+    // the centre weighted by length, as stored in the route table (see PathMeasure), null for an empty path
+    public LatLng getCentre() {
+        if (lats.length == 0) {
+            return null;
+        }
+        PathMeasure measure = new PathMeasure(lats, lngs, lats.length, partStarts, partStarts.length);
+        return new LatLng(measure.getCentreLat(), measure.getCentreLng());
+    }
+
+    // the length of all the parts along the surface of the earth in metres
+    public double getLengthMetres() {
+        double rtn = 0.0;
+        for (int part = 0; part < partStarts.length; ++part) {
+            int end = getPartEnd(part);
+            for (int idx = partStarts[part] + 1; idx < end; ++idx) {
+                rtn += PathMeasure.distanceMetres(lats[idx - 1], lngs[idx - 1], lats[idx], lngs[idx]);
+            }
+        }
+        return rtn;
+    }
+
+    // bridges to the maps api
+
+    /**
+     * A read only view of the points of a part, LatLngs are made as they are read.
+     */
+    public List<LatLng> asLatLngs(final int part) {
+        final int start = partStarts[part];
+        final int end = getPartEnd(part);
+        return new AbstractList<LatLng>() {
+            @Override
+            public LatLng get(int idx) {
+                if (idx < 0 || start + idx >= end) {
+                    throw new IndexOutOfBoundsException("No point " + idx);
+                }
+                return getLatLng(start + idx);
+            }
+
+            @Override
+            public int size() {
+                return end - start;
+            }
+        };
+    }
+
+    /**
+     * Polyline options for a part, one polyline is needed for each part.
+     */
+    public PolylineOptions toPolylineOptions(int part) {
+        return new PolylineOptions().addAll(asLatLngs(part));
+    }
+}
@@ -0,0 +1,291 @@
+package uk.gov.eastlothian.gowalk.model;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * A read only R-tree over bounding boxes, bulk loaded with Sort-Tile-Recursive
+ * packing so every node is full and neighbouring boxes share a node.
+ *
+ * The whole tree lives in two flat arrays.  The items come first, then each
+ * level of nodes above them up to the root, which is the last node.  A node
+ * holds the bounding box of its children and the position of the first one,
+ * its children are stored next to each other.
+ *
+ *   PackedRTree tree = new PackedRTree(minX, minY, maxX, maxY, count);
+ *   tree.search(x - d, y - d, x + d, y + d, visitor);
+ *   tree.nearest(x, y, xScale, yScale, maxDistance, distance, nearestVisitor);
+ */
+public class PackedRTree {
+
+    public static final int DEFAULT_NODE_SIZE = 16;
+
+    /**
+     * Called for each item whose box overlaps the search box.
+     */
+    public interface Visitor {
+        void visit(int item);
+    }
+
+    /**
+     * The distance from the point being searched around to an item, in the
+     * same units as the scaled distance to its box and never less than it.
+     */
+    public interface Distance {
+        double to(int item);
+    }
+
+    /**
+     * Called for items nearest first, return false to stop the search.
+     */
+    public interface NearestVisitor {
+        boolean visit(int item, double distance);
+    }
+
+    private final int mNodeSize;
+    private final int mNumItems;
+    // minX, minY, maxX, maxY of every item and node
+    private final double[] mBoxes;
+    // for an item its index in the arrays it was built from, for a node the position of its first child
+    private final int[] mIndices;
+    // the position after the last node of each level, items are level 0
+    private final int[] mLevelEnds;
+    private int[] mStack = new int[64];
+
+    public PackedRTree(double[] minX, double[] minY, double[] maxX, double[] maxY, int count) {
+        this(minX, minY, maxX, maxY, count, DEFAULT_NODE_SIZE);
+    }
+
+    public PackedRTree(double[] minX, double[] minY, double[] maxX, double[] maxY, int count, int nodeSize) {
+        mNodeSize = Math.max(2, nodeSize);
+        mNumItems = count;
+
+        // work out how many nodes there are on each level
+        int levels = 1;
+        int total = count;
+        for (int n = count; n > 1; n = (n + mNodeSize - 1) / mNodeSize) {
+            total += (n + mNodeSize - 1) / mNodeSize;
+            ++levels;
+        }
+        mBoxes = new double[4 * total];
+        mIndices = new int[total];
+        mLevelEnds = new int[levels];
+
+        for (int idx = 0; idx < count; ++idx) {
+            setBox(idx, minX[idx], minY[idx], maxX[idx], maxY[idx]);
+            mIndices[idx] = idx;
+        }
+
+        // pack each level in STR order and make the level above it
+        int start = 0;
+        int end = count;
+        int level = 0;
+        while (true) {
+            mLevelEnds[level++] = end;
+            if (end - start <= 1) {
+                break;
+            }
+            sortTileRecursive(start, end);
+            int parent = end;
+            for (int child = start; child < end; child += mNodeSize) {
+                int last = Math.min(child + mNodeSize, end);
+                double nodeMinX = Double.POSITIVE_INFINITY, nodeMinY = Double.POSITIVE_INFINITY;
+                double nodeMaxX = Double.NEGATIVE_INFINITY, nodeMaxY = Double.NEGATIVE_INFINITY;
+                for (int idx = child; idx < last; ++idx) {
+                    nodeMinX = Math.min(nodeMinX, mBoxes[4 * idx]);
+                    nodeMinY = Math.min(nodeMinY, mBoxes[4 * idx + 1]);
+                    nodeMaxX = Math.max(nodeMaxX, mBoxes[4 * idx + 2]);
+                    nodeMaxY = Math.max(nodeMaxY, mBoxes[4 * idx + 3]);
+                }
+                setBox(parent, nodeMinX, nodeMinY, nodeMaxX, nodeMaxY);
+                mIndices[parent] = child;
+                ++parent;
+            }
+            start = end;
+            end = parent;
+        }
+    }
+
+    public int size() {
+        return mNumItems;
+    }
+
+    /**
+     * Visits every item whose box overlaps the search box.  Not thread safe,
+     * the tree reuses its search stack.
+     */
+    public void search(double minX, double minY, double maxX, double maxY, Visitor visitor) {
+        if (mNumItems == 0) {
+            return;
+        }
+        int top = 0;
+        mStack[top++] = mIndices.length - 1;
+        while (top > 0) {
+            int node = mStack[--top];
+            if (!overlaps(node, minX, minY, maxX, maxY)) {
+                continue;
+            }
+            if (node < mNumItems) {
+                visitor.visit(mIndices[node]);
+                continue;
+            }
+            int first = mIndices[node];
+            int last = Math.min(first + mNodeSize, levelEnd(first));
+            if (top + (last - first) > mStack.length) {
+                mStack = Arrays.copyOf(mStack, 2 * mStack.length + (last - first));
+            }
+            for (int child = first; child < last; ++child) {
+                mStack[top++] = child;
+            }
+        }
+    }
+
+    /**
+     * Visits items in order of distance from x, y, nearest first, until the
+     * visitor returns false or the rest are further than maxDistance.
+     *
+     * Nodes are opened best first: a queue holds nodes by the distance to
+     * their box and items by their own distance, so an item only comes off
+     * the queue once nothing left in the tree can be nearer.  Distances to
+     * boxes are measured with x and y multiplied by xScale and yScale, e.g.
+     * metres per degree of longitude and latitude.
+     */
+    public void nearest(double x, double y, double xScale, double yScale, double maxDistance,
+                        Distance distance, NearestVisitor visitor) {
+        if (mNumItems == 0) {
+            return;
+        }
+        PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+        queue.add(new QueueEntry(mIndices.length - 1, false, 0.0));
+        while (!queue.isEmpty()) {
+            QueueEntry entry = queue.poll();
+            if (entry.distance > maxDistance) {
+                break;
+            }
+            if (entry.measured) {
+                if (!visitor.visit(mIndices[entry.node], entry.distance)) {
+                    break;
+                }
+                continue;
+            }
+            if (entry.node < mNumItems) {
+                // an item comes back with its own distance once it is nearer than any box left
+                double itemDistance = distance.to(mIndices[entry.node]);
+                if (itemDistance <= maxDistance) {
+                    queue.add(new QueueEntry(entry.node, true, itemDistance));
+                }
+                continue;
+            }
+            int first = mIndices[entry.node];
+            int last = Math.min(first + mNodeSize, levelEnd(first));
+            for (int child = first; child < last; ++child) {
+                double boxDistance = boxDistance(child, x, y, xScale, yScale);
+                if (boxDistance <= maxDistance) {
+                    queue.add(new QueueEntry(child, false, boxDistance));
+                }
+            }
+        }
+    }
+
+    // private
+
+    private double boxDistance(int node, double x, double y, double xScale, double yScale) {
+        double dx = Math.max(0.0, Math.max(mBoxes[4 * node] - x, x - mBoxes[4 * node + 2])) * xScale;
+        double dy = Math.max(0.0, Math.max(mBoxes[4 * node + 1] - y, y - mBoxes[4 * node + 3])) * yScale;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private void setBox(int node, double minX, double minY, double maxX, double maxY) {
+        mBoxes[4 * node] = minX;
+        mBoxes[4 * node + 1] = minY;
+        mBoxes[4 * node + 2] = maxX;
+        mBoxes[4 * node + 3] = maxY;
+    }
+
+    private boolean overlaps(int node, double minX, double minY, double maxX, double maxY) {
+        return mBoxes[4 * node] <= maxX && mBoxes[4 * node + 1] <= maxY
+                && mBoxes[4 * node + 2] >= minX && mBoxes[4 * node + 3] >= minY;
+    }
+
+    // the end of the level that holds position
+    private int levelEnd(int position) {
+        for (int levelEnd : mLevelEnds) {
+            if (position < levelEnd) {
+                return levelEnd;
+            }
+        }
+        return mIndices.length;
+    }
+
+    /*
+     * Reorders the nodes between start and end so each run of mNodeSize
+     * nodes is a tile: sorted into vertical slices by x and then by y within
+     * each slice.
+     */
+    private void sortTileRecursive(int start, int end) {
+        int count = end - start;
+        Integer[] order = new Integer[count];
+        for (int idx = 0; idx < count; ++idx) {
+            order[idx] = start + idx;
+        }
+        Arrays.sort(order, new CentreComparator(0));
+
+        int nodes = (count + mNodeSize - 1) / mNodeSize;
+        int slices = (int) Math.ceil(Math.sqrt(nodes));
+        int sliceSize = mNodeSize * (int) Math.ceil((double) nodes / slices);
+        CentreComparator byY = new CentreComparator(1);
+        for (int slice = 0; slice < count; slice += sliceSize) {
+            Arrays.sort(order, slice, Math.min(slice + sliceSize, count), byY);
+        }
+
+        double[] boxes = Arrays.copyOfRange(mBoxes, 4 * start, 4 * end);
+        int[] indices = Arrays.copyOfRange(mIndices, start, end);
+        for (int idx = 0; idx < count; ++idx) {
+            int from = order[idx] - start;
+            System.arraycopy(boxes, 4 * from, mBoxes, 4 * (start + idx), 4);
+            mIndices[start + idx] = indices[from];
+        }
+    }
+
+    // a node or item waiting in the nearest queue, measured once an item's own distance is known
+    private static class QueueEntry implements Comparable<QueueEntry> {
+        private final int node;
+        private final boolean measured;
+        private final double distance;
+
+        private QueueEntry(int node, boolean measured, double distance) {
+            this.node = node;
+            this.measured = measured;
+            this.distance = distance;
+        }
+
+        @Override
+        public int compareTo(QueueEntry another) {
+            int rtn = Double.compare(distance, another.distance);
+            if (rtn == 0 && measured != another.measured) {
+                // at the same distance an item is ready before a box that might hold one
+                rtn = measured ? -1 : 1;
+            }
+            return rtn;
+        }
+    }
+
+    // orders nodes by the centre of their box along one axis, 0 for x and 1 for y
+    private class CentreComparator implements Comparator<Integer> {
+        private final int mAxis;
+
+        private CentreComparator(int axis) {
+            mAxis = axis;
+        }
+
+        @Override
+        public int compare(Integer lhs, Integer rhs) {
+            return Double.compare(centre(lhs), centre(rhs));
+        }
+
+        private double centre(int node) {
+            return mBoxes[4 * node + mAxis] + mBoxes[4 * node + 2 + mAxis];
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package uk.gov.eastlothian.gowalk.model;
+
+/**
+ * Encodes route geometry into the compact blob stored in the route table and
+ * decodes it again straight into primitive arrays.
+ *
+ * A path is made of one or more parts (the lines of a MultiLineString).  The
+ * blob is laid out as
+ *
+ *   byte    format version
+ *   varint  total number of points
+ *   varint  number of parts
+ *   varint  number of points in each part
+ *   varint  for each point the change in latitude then longitude from the
+ *           previous point (the first from 0,0) in microdegrees, zigzag encoded
+ *
+ * Neighbouring points on a path are close together so most of the changes fit
+ * in one or two bytes.
+ *
+ * A blob that is truncated, has an over long varint or has counts that can't
+ * fit in it is rejected with an IllegalArgumentException.
+ *
+ * This is plain java so the walksdb module can use it to build walks.db.
+ */
+public final class PathCodec {
+
+    public static final int VERSION = 1;
+
+    private static final double MICRODEGREES = 1e6;
+
+    private PathCodec() {
+    }
+
+    /**
+     * Encodes pointCount points where part i starts at partStarts[i].
+     */
+    public static byte[] encode(double[] lats, double[] lngs, int pointCount, int[] partStarts, int partCount) {
+        // at most 5 bytes per varint, most values take far fewer
+        byte[] out = new byte[1 + 5 * (2 + partCount) + 10 * pointCount];
+        int pos = 0;
+        out[pos++] = (byte) VERSION;
+        pos = writeVarint(out, pos, pointCount);
+        pos = writeVarint(out, pos, partCount);
+        for (int part = 0; part < partCount; ++part) {
+            int end = part + 1 < partCount ? partStarts[part + 1] : pointCount;
+            pos = writeVarint(out, pos, end - partStarts[part]);
+        }
+        int lastLat = 0;
+        int lastLng = 0;
+        for (int idx = 0; idx < pointCount; ++idx) {
+            int lat = (int) Math.round(lats[idx] * MICRODEGREES);
+            int lng = (int) Math.round(lngs[idx] * MICRODEGREES);
+            pos = writeVarint(out, pos, zigzag(lat - lastLat));
+            pos = writeVarint(out, pos, zigzag(lng - lastLng));
+            lastLat = lat;
+            lastLng = lng;
+        }
+        byte[] rtn = new byte[pos];
+        System.arraycopy(out, 0, rtn, 0, pos);
+        return rtn;
+    }
+
+    /**
+     * The total number of points in an encoded path.
+     */
+    public static int getPointCount(byte[] blob) {
+        // every point takes at least two bytes
+        return new VarintReader(blob).nextCount(2);
+    }
+
+    /**
+     * The number of parts in an encoded path.
+     */
+    public static int getPartCount(byte[] blob) {
+        VarintReader reader = new VarintReader(blob);
+        reader.nextCount(2);
+        return reader.nextCount(1);
+    }
+
+    /**
+     * Decodes a path into lats and lngs, which must hold getPointCount points.
+     * If partStarts isn't null it is filled in with the index of the first
+     * point of each part and must hold getPartCount entries.
+     * Returns the number of points.
+     */
+    public static int decode(byte[] blob, double[] lats, double[] lngs, int[] partStarts) {
+        VarintReader reader = new VarintReader(blob);
+        int pointCount = reader.nextCount(2);
+        int partCount = reader.nextCount(1);
+        int start = 0;
+        for (int part = 0; part < partCount; ++part) {
+            if (partStarts != null) {
+                partStarts[part] = start;
+            }
+            start += reader.nextCount(0);
+            if (start > pointCount) {
+                throw new IllegalArgumentException("Path parts have more than " + pointCount + " points");
+            }
+        }
+        if (start != pointCount) {
+            throw new IllegalArgumentException("Path parts have " + start + " of " + pointCount + " points");
+        }
+
+        int lat = 0;
+        int lng = 0;
+        for (int idx = 0; idx < pointCount; ++idx) {
+            lat += unzigzag(reader.next());
+            lng += unzigzag(reader.next());
+            lats[idx] = lat / MICRODEGREES;
+            lngs[idx] = lng / MICRODEGREES;
+        }
+        return pointCount;
+    }
+
+    // private
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int writeVarint(byte[] out, int pos, int value) {
+        while ((value & ~0x7f) != 0) {
+            out[pos++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    /*
+     * Reads the varints of a blob in order, starting after the version byte.
+     */
+    private static class VarintReader {
+        private final byte[] mBlob;
+        private int mPos = 1;
+
+        private VarintReader(byte[] blob) {
+            if (blob == null || blob.length == 0 || blob[0] != VERSION) {
+                throw new IllegalArgumentException("Unknown path encoding");
+            }
+            mBlob = blob;
+        }
+
+        private int next() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (mPos >= mBlob.length) {
+                    throw new IllegalArgumentException("Truncated path");
+                }
+                if (shift > 28) {
+                    // an int takes at most 5 bytes
+                    throw new IllegalArgumentException("Varint too long at " + mPos);
+                }
+                b = mBlob[mPos++];
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        // a count of things that each take at least bytesEach of what is left of the blob
+        private int nextCount(int bytesEach) {
+            int count = next();
+            if (count < 0 || (long) count * bytesEach > mBlob.length - mPos) {
+                throw new IllegalArgumentException("Impossible count " + count + " at " + mPos);
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package uk.gov.eastlothian.gowalk.model;
+
+/**
+ * Measures a path along the surface of the earth: its length and its centre.
+ *
+ * The centre is weighted by length, each segment counts by how long it is,
+ * so a stretch of path with lots of closely spaced points doesn't pull the
+ * centre towards it.  A path with no length is centred on the average of its
+ * points, and a path with no points has no centre at all, see hasCentre.
+ *
+ * This is plain java so the walksdb module can use it to build walks.db.
+ */
+public final class PathMeasure {
+
+    private static final double EARTH_RADIUS_METRES = 6371009.0;
+
+    private final double lengthMetres;
+    private final double centreLat;
+    private final double centreLng;
+    private final boolean hasCentre;
+
+    /**
+     * Measures pointCount points where part i starts at partStarts[i].
+     */
+    public PathMeasure(double[] lats, double[] lngs, int pointCount, int[] partStarts, int partCount) {
+        double length = 0.0;
+        double latSum = 0.0;
+        double lngSum = 0.0;
+        for (int part = 0; part < partCount; ++part) {
+            int end = part + 1 < partCount ? partStarts[part + 1] : pointCount;
+            for (int idx = partStarts[part] + 1; idx < end; ++idx) {
+                double segment = distanceMetres(lats[idx - 1], lngs[idx - 1], lats[idx], lngs[idx]);
+                length += segment;
+                latSum += segment * (lats[idx - 1] + lats[idx]) / 2;
+                lngSum += segment * (lngs[idx - 1] + lngs[idx]) / 2;
+            }
+        }
+
+        if (length > 0.0) {
+            centreLat = latSum / length;
+            centreLng = lngSum / length;
+        } else {
+            double latTotal = 0.0;
+            double lngTotal = 0.0;
+            for (int idx = 0; idx < pointCount; ++idx) {
+                latTotal += lats[idx];
+                lngTotal += lngs[idx];
+            }
+            centreLat = pointCount > 0 ? latTotal / pointCount : 0.0;
+            centreLng = pointCount > 0 ? lngTotal / pointCount : 0.0;
+        }
+        lengthMetres = length;
+        hasCentre = pointCount > 0;
+    }
+
+    public double getLengthMetres() {
+        return lengthMetres;
+    }
+
+    // false for a path with no points, the centre is meaningless then
+    public boolean hasCentre() {
+        return hasCentre;
+    }
+
+    public double getCentreLat() {
+        return centreLat;
+    }
+
+    public double getCentreLng() {
+        return centreLng;
+    }
+
+    // haversine distance
+    public static double distanceMetres(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_METRES * Math.asin(Math.sqrt(a));
+    }
+}
@@ -0,0 +1,120 @@
+package uk.gov.eastlothian.gowalk.model;
+
+/**
+ * Makes the coarser copies of a route's geometry that the map draws when it
+ * is zoomed out.
+ *
+ * Each part of the path is simplified with Douglas-Peucker: a point is only
+ * kept if leaving it out would move the line by more than the tolerance.
+ * The first and last points of every part are always kept so a simplified
+ * path has the same parts as the full one.
+ *
+ * The levels are worked out when walks.db is built and stored next to the
+ * full coordinates, each tolerance is about one screen pixel at the highest
+ * zoom the level is drawn at.
+ *
+ * This is plain java so the walksdb module can use it to build walks.db.
+ */
+public final class PathSimplifier {
+
+    // drawn below zoom 12, a pixel is about 40m at zoom 11 in East Lothian
+    public static final double LOW_TOLERANCE_METRES = 40.0;
+    // drawn below zoom 14, a pixel is about 10m at zoom 13
+    public static final double MEDIUM_TOLERANCE_METRES = 10.0;
+
+    private static final double METRES_PER_DEGREE = 111320.0;
+
+    private PathSimplifier() {
+    }
+
+    /**
+     * Simplifies pointCount points where part i starts at partStarts[i] and
+     * returns the result encoded with PathCodec.
+     */
+    public static byte[] simplify(double[] lats, double[] lngs, int pointCount,
+                                  int[] partStarts, int partCount, double toleranceMetres) {
+        boolean[] keep = new boolean[pointCount];
+        int[] stack = new int[2 * Math.max(pointCount, 1)];
+        for (int part = 0; part < partCount; ++part) {
+            int end = part + 1 < partCount ? partStarts[part + 1] : pointCount;
+            simplifyPart(lats, lngs, partStarts[part], end - 1, toleranceMetres, keep, stack);
+        }
+
+        // copy the kept points, the part starts move down with them
+        double[] keptLats = new double[pointCount];
+        double[] keptLngs = new double[pointCount];
+        int[] keptPartStarts = new int[partCount];
+        int kept = 0;
+        for (int part = 0; part < partCount; ++part) {
+            int end = part + 1 < partCount ? partStarts[part + 1] : pointCount;
+            keptPartStarts[part] = kept;
+            for (int idx = partStarts[part]; idx < end; ++idx) {
+                if (keep[idx]) {
+                    keptLats[kept] = lats[idx];
+                    keptLngs[kept] = lngs[idx];
+                    ++kept;
+                }
+            }
+        }
+        return PathCodec.encode(keptLats, keptLngs, kept, keptPartStarts, partCount);
+    }
+
+    // private
+
+    // marks the points to keep between first and last inclusive, without recursing
+    private static void simplifyPart(double[] lats, double[] lngs, int first, int last,
+                                     double toleranceMetres, boolean[] keep, int[] stack) {
+        if (last < first) {
+            return;
+        }
+        keep[first] = true;
+        keep[last] = true;
+
+        // distances are measured on a flat projection around the start of the part,
+        // which is plenty accurate over the length of a walk
+        double lngScale = Math.cos(Math.toRadians(lats[first]));
+        double toleranceDegrees = toleranceMetres / METRES_PER_DEGREE;
+        double toleranceSquared = toleranceDegrees * toleranceDegrees;
+
+        int top = 0;
+        stack[top++] = first;
+        stack[top++] = last;
+        while (top > 0) {
+            int end = stack[--top];
+            int start = stack[--top];
+            double ax = lngs[start] * lngScale;
+            double ay = lats[start];
+            double dx = lngs[end] * lngScale - ax;
+            double dy = lats[end] - ay;
+            double lengthSquared = dx * dx + dy * dy;
+
+            int furthest = -1;
+            double furthestSquared = toleranceSquared;
+            for (int idx = start + 1; idx < end; ++idx) {
+                double px = lngs[idx] * lngScale - ax;
+                double py = lats[idx] - ay;
+                double distanceSquared;
+                if (lengthSquared == 0.0) {
+                    distanceSquared = px * px + py * py;
+                } else {
+                    double t = Math.max(0.0, Math.min(1.0, (px * dx + py * dy) / lengthSquared));
+                    double ex = px - t * dx;
+                    double ey = py - t * dy;
+                    distanceSquared = ex * ex + ey * ey;
+                }
+                if (distanceSquared > furthestSquared) {
+                    furthestSquared = distanceSquared;
+                    furthest = idx;
+                }
+            }
+
+            if (furthest != -1) {
+                keep[furthest] = true;
+                stack[top++] = start;
+                stack[top++] = furthest;
+                stack[top++] = furthest;
+                stack[top++] = end;
+            }
+        }
+    }
+}
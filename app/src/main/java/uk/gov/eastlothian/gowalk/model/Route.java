@@ -4,10 +4,6 @@ import android.database.Cursor;
 import android.util.Log;
 
 import com.google.android.gms.maps.model.LatLng;
-import com.google.android.gms.maps.model.PolylineOptions;
-
-import org.json.JSONArray;
-import org.json.JSONException;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -21,31 +17,60 @@ public class Route extends BaseRecord {
 
     private static final String LOG_TAG = Route.class.getSimpleName();
 
+    // levels of detail of the path, the simplified ones come from PathSimplifier
+    public static final int DETAIL_LOW = 0;
+    public static final int DETAIL_MEDIUM = 1;
+    public static final int DETAIL_FULL = 2;
+
     private long id;
     private int routeNumber;
-    private List<LatLng> coordinates;
+    // the coordinates for each level of detail, a path is decoded the first time it is asked for
+    private byte[][] coordinates = new byte[DETAIL_FULL + 1][];
+    private PackedPath[] paths = new PackedPath[DETAIL_FULL + 1];
+    // bounding box from the route table, NaN if it wasn't queried
+    private double minLat = Double.NaN, minLng = Double.NaN, maxLat = Double.NaN, maxLng = Double.NaN;
+    // summary of the path from the route table, NaN or -1 if it wasn't queried
+    private double centreLat = Double.NaN, centreLng = Double.NaN;
+    private double startLat = Double.NaN, startLng = Double.NaN;
+    private double endLat = Double.NaN, endLng = Double.NaN;
+    private int pointCount = -1;
+    private double measuredLength = Double.NaN;
     private int length;
     private String surface;
     private String description;
     private long primaryAreaId;
-    private PolylineOptions polylineOptions;
 
-    public Route(long id, int routeNumber, String coordinates,
+    public Route(long id, int routeNumber, byte[] coordinates,
                  int length, String surface, String description,
                  long primaryAreaId) {
         this.id = id;
         this.routeNumber = routeNumber;
-        this.coordinates = convertCoordinates(coordinates);
+        this.coordinates[DETAIL_FULL] = coordinates;
         this.length = length;
         this.surface = surface;
         this.description = description;
         this.primaryAreaId = primaryAreaId;
     }
 
-    private Route(Cursor cursor) {
+    Route(Cursor cursor) {
         this.id = getLong(cursor, RouteEntry._ID, -1);
         this.routeNumber = getInt(cursor, RouteEntry.COLUMN_ROUTE_NUMBER, -1);
-        this.coordinates = convertCoordinates(getString(cursor, RouteEntry.COLUMN_COORDINATES, ""));
+        // only decoded if they're used
+        this.coordinates[DETAIL_LOW] = getBlob(cursor, RouteEntry.COLUMN_COORDINATES_LOW, null);
+        this.coordinates[DETAIL_MEDIUM] = getBlob(cursor, RouteEntry.COLUMN_COORDINATES_MEDIUM, null);
+        this.coordinates[DETAIL_FULL] = getBlob(cursor, RouteEntry.COLUMN_COORDINATES, null);
+        this.minLat = getDouble(cursor, RouteEntry.COLUMN_MIN_LAT, Double.NaN);
+        this.minLng = getDouble(cursor, RouteEntry.COLUMN_MIN_LNG, Double.NaN);
+        this.maxLat = getDouble(cursor, RouteEntry.COLUMN_MAX_LAT, Double.NaN);
+        this.maxLng = getDouble(cursor, RouteEntry.COLUMN_MAX_LNG, Double.NaN);
+        this.centreLat = getDouble(cursor, RouteEntry.COLUMN_CENTRE_LAT, Double.NaN);
+        this.centreLng = getDouble(cursor, RouteEntry.COLUMN_CENTRE_LNG, Double.NaN);
+        this.startLat = getDouble(cursor, RouteEntry.COLUMN_START_LAT, Double.NaN);
+        this.startLng = getDouble(cursor, RouteEntry.COLUMN_START_LNG, Double.NaN);
+        this.endLat = getDouble(cursor, RouteEntry.COLUMN_END_LAT, Double.NaN);
+        this.endLng = getDouble(cursor, RouteEntry.COLUMN_END_LNG, Double.NaN);
+        this.pointCount = getInt(cursor, RouteEntry.COLUMN_POINT_COUNT, -1);
+        this.measuredLength = getDouble(cursor, RouteEntry.COLUMN_MEASURED_LENGTH, Double.NaN);
         this.length = getInt(cursor, RouteEntry.COLUMN_LENGTH, 0);
         this.surface = getString(cursor, RouteEntry.COLUMN_SURFACE, "Unknown");
         this.description = getString(cursor, RouteEntry.COLUMN_DESCRIPTION, "");
@@ -54,7 +79,8 @@ public class Route extends BaseRecord {
 
     /*
      * This method will make a list of Routes from a cursor.
-     * If the cursor doesn't have a column then it will set a default
+     * If the cursor doesn't have a column then it will set a default, so only
+     * ask for the coordinates if the path is going to be drawn.
      */
     public static List<Route> fromCursor(Cursor cursor) {
         List<Route> rtnList = new ArrayList<Route>();
@@ -74,8 +100,47 @@ public class Route extends BaseRecord {
         return routeNumber;
     }
 
-    public List<LatLng> getCoordinates() {
-        return coordinates;
+    public PackedPath getPath() {
+        return getPath(DETAIL_FULL);
+    }
+
+    // the path at a level of detail, or the next level up if that one wasn't queried
+    public PackedPath getPath(int detail) {
+        while (detail < DETAIL_FULL && paths[detail] == null && coordinates[detail] == null) {
+            ++detail;
+        }
+        if (paths[detail] == null) {
+            paths[detail] = PackedPath.fromBlob(coordinates[detail]);
+            coordinates[detail] = null;
+        }
+        return paths[detail];
+    }
+
+    // bounding box, taken from the path if it wasn't queried, NaN for a route without any geometry
+
+    public double getMinLat() {
+        return Double.isNaN(minLat) ? getPath().getMinLat() : minLat;
+    }
+
+    public double getMinLng() {
+        return Double.isNaN(minLng) ? getPath().getMinLng() : minLng;
+    }
+
+    public double getMaxLat() {
+        return Double.isNaN(maxLat) ? getPath().getMaxLat() : maxLat;
+    }
+
+    public double getMaxLng() {
+        return Double.isNaN(maxLng) ? getPath().getMaxLng() : maxLng;
+    }
+
+    public int getPointCount() {
+        return pointCount < 0 ? getPath().size() : pointCount;
+    }
+
+    // length in metres measured from the coordinates, getLength is the one from the council's data
+    public double getMeasuredLength() {
+        return Double.isNaN(measuredLength) ? getPath().getLengthMetres() : measuredLength;
     }
 
     public int getLength() {
@@ -92,48 +157,27 @@ public class Route extends BaseRecord {
 
     public long getPrimaryAreaId() { return primaryAreaId; }
 
-    // helper functions
+    // helper functions, these use the route table's columns so the path isn't decoded if they were queried,
+    // they're null for a route without any geometry
     public LatLng centrePoint() {
-        // get the average of the lat long
-        double latCentre = 0.0;
-        double lngCentre = 0.0;
-        for (LatLng latLng : coordinates) {
-            latCentre += latLng.latitude;
-            lngCentre += latLng.longitude;
+        if (!Double.isNaN(centreLat) && !Double.isNaN(centreLng)) {
+            return new LatLng(centreLat, centreLng);
         }
-        return new LatLng(latCentre/coordinates.size(), lngCentre/coordinates.size());
+        // the same centre as the column, worked out from the path
+        return getPath().getCentre();
     }
     public LatLng startPoint() {
-        return coordinates.get(0);
+        if (!Double.isNaN(startLat) && !Double.isNaN(startLng)) {
+            return new LatLng(startLat, startLng);
+        }
+        PackedPath path = getPath();
+        return path.isEmpty() ? null : path.getLatLng(0);
     }
     public LatLng endPoint() {
-        return coordinates.get(coordinates.size()-1);
-    }
-
-    // private
-
-    private static List<LatLng> convertCoordinates(String coordinates) {
-        List<LatLng> rtnList = new ArrayList<LatLng>();
-        if(!coordinates.isEmpty()) {
-            try {
-                JSONArray array = new JSONArray(coordinates).getJSONArray(0);
-                for (int idx = 0; idx < array.length(); ++idx) {
-                    JSONArray pair = array.getJSONArray(idx);
-                    rtnList.add(new LatLng(pair.getDouble(1), pair.getDouble(0)));
-                }
-            } catch (JSONException e) {
-                //Log.d(LOG_TAG, "Error parsing route coordinates for route: " + e);
-            }
+        if (!Double.isNaN(endLat) && !Double.isNaN(endLng)) {
+            return new LatLng(endLat, endLng);
         }
-        return rtnList;
-    }
-
-
-    public PolylineOptions getPolylineOptions() {
-        return polylineOptions;
-    }
-
-    public void setPolylineOptions(PolylineOptions polylineOptions) {
-        this.polylineOptions = polylineOptions;
+        PackedPath path = getPath();
+        return path.isEmpty() ? null : path.getLatLng(path.size()-1);
     }
 }
@@ -0,0 +1,55 @@
+package uk.gov.eastlothian.gowalk.model;
+
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import uk.gov.eastlothian.gowalk.data.WalksContract.RouteEntry;
+
+/**
+ * Everything the route detail screen shows: the route, the area it is shown
+ * in and the wildlife that can be seen on it, read from the one cursor of the
+ * route detail uri.
+ */
+public class RouteDetail extends BaseRecord {
+
+    private Route route;
+    private Area area;
+    private List<Wildlife> wildlife = new ArrayList<Wildlife>();
+
+    private RouteDetail() {
+    }
+
+    public static RouteDetail fromCursor(Cursor cursor) {
+        RouteDetail rtn = new RouteDetail();
+        for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+            switch (getInt(cursor, RouteEntry.COLUMN_DETAIL_SECTION, -1)) {
+                case RouteEntry.DETAIL_SECTION_ROUTE:
+                    rtn.route = new Route(cursor);
+                    break;
+                case RouteEntry.DETAIL_SECTION_AREA:
+                    rtn.area = new Area(cursor);
+                    break;
+                case RouteEntry.DETAIL_SECTION_WILDLIFE:
+                    rtn.wildlife.add(new Wildlife(cursor));
+                    break;
+            }
+        }
+        return rtn;
+    }
+
+    // null if there isn't a route with the id
+    public Route getRoute() {
+        return route;
+    }
+
+    // null if there isn't an area with the id
+    public Area getArea() {
+        return area;
+    }
+
+    public List<Wildlife> getWildlife() {
+        return wildlife;
+    }
+}
@@ -0,0 +1,177 @@
+package uk.gov.eastlothian.gowalk.model;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds the route nearest to a point, for working out which route was tapped
+ * on the map, or the k routes nearest to the user.
+ *
+ * Every segment of every route goes into a PackedRTree, so a lookup only
+ * measures the distance to the few segments whose boxes are near the point
+ * instead of walking every vertex of every route.
+ */
+public class RouteIndex {
+
+    private static final double METRES_PER_DEGREE = 111320.0;
+
+    private final List<Route> mRoutes;
+    private final PackedRTree mTree;
+    // for each segment the route it belongs to and the index of its first point,
+    // a part with a single point is a segment that starts and ends at that point
+    private final int[] mSegmentRoutes;
+    private final int[] mSegmentStarts;
+    private final boolean[] mSegmentIsPoint;
+
+    // the nearest segment found by the current lookup
+    private double mBestDistance;
+    private int mBestSegment;
+
+    public RouteIndex(List<Route> routes) {
+        mRoutes = routes;
+
+        int count = 0;
+        for (Route route : routes) {
+            PackedPath path = route.getPath();
+            for (int part = 0; part < path.getPartCount(); ++part) {
+                count += segmentCount(path.getPartEnd(part) - path.getPartStart(part));
+            }
+        }
+
+        mSegmentRoutes = new int[count];
+        mSegmentStarts = new int[count];
+        mSegmentIsPoint = new boolean[count];
+        double[] minLng = new double[count];
+        double[] minLat = new double[count];
+        double[] maxLng = new double[count];
+        double[] maxLat = new double[count];
+        int segment = 0;
+        for (int idx = 0; idx < routes.size(); ++idx) {
+            PackedPath path = routes.get(idx).getPath();
+            for (int part = 0; part < path.getPartCount(); ++part) {
+                int start = path.getPartStart(part);
+                int end = path.getPartEnd(part);
+                boolean isPoint = end - start == 1;
+                for (int point = start; point < start + segmentCount(end - start); ++point) {
+                    int next = isPoint ? point : point + 1;
+                    mSegmentIsPoint[segment] = isPoint;
+                    mSegmentRoutes[segment] = idx;
+                    mSegmentStarts[segment] = point;
+                    minLat[segment] = Math.min(path.getLat(point), path.getLat(next));
+                    maxLat[segment] = Math.max(path.getLat(point), path.getLat(next));
+                    minLng[segment] = Math.min(path.getLng(point), path.getLng(next));
+                    maxLng[segment] = Math.max(path.getLng(point), path.getLng(next));
+                    ++segment;
+                }
+            }
+        }
+        mTree = new PackedRTree(minLng, minLat, maxLng, maxLat, count);
+    }
+
+    /**
+     * The route with a segment nearest to lat, lng, or null if there isn't one
+     * within toleranceMetres.  Must be called on one thread at a time.
+     */
+    public Route findNearestRoute(final double lat, final double lng, double toleranceMetres) {
+        final double lngScale = Math.cos(Math.toRadians(lat));
+        double toleranceLat = toleranceMetres / METRES_PER_DEGREE;
+        double toleranceLng = toleranceLat / Math.max(lngScale, 1e-6);
+
+        mBestDistance = toleranceMetres;
+        mBestSegment = -1;
+        mTree.search(lng - toleranceLng, lat - toleranceLat, lng + toleranceLng, lat + toleranceLat,
+                new PackedRTree.Visitor() {
+            @Override
+            public void visit(int segment) {
+                double distance = distanceMetres(segment, lat, lng, lngScale);
+                if (distance <= mBestDistance) {
+                    mBestDistance = distance;
+                    mBestSegment = segment;
+                }
+            }
+        });
+        return mBestSegment == -1 ? null : mRoutes.get(mSegmentRoutes[mBestSegment]);
+    }
+
+    /**
+     * Up to k routes nearest to lat, lng, nearest first, with the distance
+     * from the point to the nearest part of each route's path.  Routes further
+     * than maxDistanceMetres aren't returned, pass Double.POSITIVE_INFINITY
+     * for no limit.  Must be called on one thread at a time.
+     */
+    public List<Neighbour> findNearestRoutes(final double lat, final double lng, final int k,
+                                             double maxDistanceMetres) {
+        final List<Neighbour> rtn = new ArrayList<Neighbour>();
+        if (k <= 0) {
+            return rtn;
+        }
+        final double lngScale = Math.cos(Math.toRadians(lat));
+        final Set<Integer> found = new HashSet<Integer>();
+        // segments come out nearest first so a route's first segment is its distance
+        mTree.nearest(lng, lat, lngScale * METRES_PER_DEGREE, METRES_PER_DEGREE, maxDistanceMetres,
+                new PackedRTree.Distance() {
+            @Override
+            public double to(int segment) {
+                return distanceMetres(segment, lat, lng, lngScale);
+            }
+        }, new PackedRTree.NearestVisitor() {
+            @Override
+            public boolean visit(int segment, double distance) {
+                int route = mSegmentRoutes[segment];
+                if (found.add(route)) {
+                    rtn.add(new Neighbour(mRoutes.get(route), distance));
+                }
+                return rtn.size() < k;
+            }
+        });
+        return rtn;
+    }
+
+    /**
+     * A route found by findNearestRoutes and how far it is from the point.
+     */
+    public static class Neighbour {
+        private final Route route;
+        private final double distanceMetres;
+
+        public Neighbour(Route route, double distanceMetres) {
+            this.route = route;
+            this.distanceMetres = distanceMetres;
+        }
+
+        public Route getRoute() {
+            return route;
+        }
+
+        public double getDistanceMetres() {
+            return distanceMetres;
+        }
+    }
+
+    // private
+
+    private static int segmentCount(int pointCount) {
+        return pointCount == 1 ? 1 : Math.max(0, pointCount - 1);
+    }
+
+    // distance from the point to a segment on a flat projection around the point
+    private double distanceMetres(int segment, double lat, double lng, double lngScale) {
+        PackedPath path = mRoutes.get(mSegmentRoutes[segment]).getPath();
+        int start = mSegmentStarts[segment];
+        int end = mSegmentIsPoint[segment] ? start : start + 1;
+        double ax = (path.getLng(start) - lng) * lngScale;
+        double ay = path.getLat(start) - lat;
+        double dx = (path.getLng(end) - lng) * lngScale - ax;
+        double dy = path.getLat(end) - lat - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = 0.0;
+        if (lengthSquared > 0.0) {
+            t = Math.max(0.0, Math.min(1.0, -(ax * dx + ay * dy) / lengthSquared));
+        }
+        double ex = ax + t * dx;
+        double ey = ay + t * dy;
+        return Math.sqrt(ex * ex + ey * ey) * METRES_PER_DEGREE;
+    }
+}
@@ -4,6 +4,7 @@ import android.content.Context;
 import android.database.Cursor;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.text.Html;
 import android.util.Log;
 
 import java.util.ArrayList;
@@ -22,6 +23,7 @@ public class Wildlife extends BaseRecord {
     private String name;
     private String category;
     private String description;
+    private CharSequence formattedDescription; // made from the description html when it is first shown
     private String imageName;
     private String whenSeen;
     private Bitmap thumbnail;
@@ -32,7 +34,7 @@ public class Wildlife extends BaseRecord {
 
     private int numLogEntries;
 
-    private Wildlife(Cursor cursor) {
+    Wildlife(Cursor cursor) {
         this.id = getLong(cursor, WildlifeEntry._ID, -1);
         this.name = getString(cursor, WildlifeEntry.COLUMN_WILDLIFE_NAME, "unknown name");
         this.category = getString(cursor, WildlifeEntry.COLUMN_CATEGORY, "unknown category");
@@ -63,6 +65,13 @@ public class Wildlife extends BaseRecord {
         return description;
     }
 
+    public CharSequence getFormattedDescription() {
+        if (formattedDescription == null) {
+            formattedDescription = Html.fromHtml(description);
+        }
+        return formattedDescription;
+    }
+
     public String getCategory() {
         return category;
     }
@@ -68,6 +68,16 @@ public class LogBookSightingDetailActivity extends MainMenuActivity  {
 
         static final int SIGHTING_ID = 0;
 
+        // projection for the log entry
+        private static final String[] LOG_ENTRY_PROJECTION = new String[] {
+                WalksContract.LogEntry._ID,
+                WalksContract.LogEntry.COLUMN_LAT,
+                WalksContract.LogEntry.COLUMN_LNG,
+                WalksContract.LogEntry.COLUMN_DATATIME,
+                WalksContract.LogEntry.COLUMN_WEATHER,
+                WalksContract.LogEntry.COLUMN_IMAGE
+        };
+
         ViewGroup rootView;
         ImageView imageView;
         TextView dataTimeTextView;
@@ -102,7 +112,7 @@ public class LogBookSightingDetailActivity extends MainMenuActivity  {
             logEntryId = getActivity().getIntent().getLongExtra("log_entry_id", -1);
             if( logEntryId != -1) {
                 Uri uri = WalksContract.LogEntry.buildLogEntrysUri(logEntryId);
-                Loader<Cursor> rtnCursor = new CursorLoader(getActivity(), uri, null, null, null, null);
+                Loader<Cursor> rtnCursor = new CursorLoader(getActivity(), uri, LOG_ENTRY_PROJECTION, null, null, null);
                 return rtnCursor;
             } else {
                 return null; // TODO: How should we handle this? Exception?
@@ -55,6 +55,21 @@ public class LogEntryActivity extends MainMenuActivity {
         static final int WILDLIFE_ID = 0;
         static final int WILDLIFE_LOG_QUERY_ID = 1;
 
+        // projections for the queries
+        private static final String[] WILDLIFE_PROJECTION = new String[] {
+                WalksContract.WildlifeEntry._ID,
+                WalksContract.WildlifeEntry.COLUMN_WILDLIFE_NAME,
+                WalksContract.WildlifeEntry.COLUMN_IMAGE_NAME
+        };
+
+        private static final String[] LOG_PROJECTION = new String[] {
+                WalksContract.LogEntry._ID,
+                WalksContract.LogEntry.COLUMN_LAT,
+                WalksContract.LogEntry.COLUMN_LNG,
+                WalksContract.LogEntry.COLUMN_DATATIME,
+                WalksContract.LogEntry.COLUMN_WEATHER
+        };
+
         long wildlifeId;
 
         ImageView imageView;
@@ -106,12 +121,12 @@ public class LogEntryActivity extends MainMenuActivity {
             switch(id) {
                 case WILDLIFE_ID: {
                     Uri uri = WalksContract.WildlifeEntry.buildWildLifeUri(wildlifeId);
-                    rtnCursor = new CursorLoader(getActivity(), uri, null, null, null, null);
+                    rtnCursor = new CursorLoader(getActivity(), uri, WILDLIFE_PROJECTION, null, null, null);
                     break;
                 }
                 case WILDLIFE_LOG_QUERY_ID: {
                     Uri uri = WalksContract.LogEntry.buildLogsForWildlifeUri(wildlifeId);
-                    rtnCursor = new CursorLoader(getActivity(), uri, null, null, null, null);
+                    rtnCursor = new CursorLoader(getActivity(), uri, LOG_PROJECTION, null, null, null);
                     break;
                 }
                 default:
@@ -36,7 +36,9 @@ import java.util.Locale;
 import uk.gov.eastlothian.gowalk.R;
 import uk.gov.eastlothian.gowalk.data.WalksContract;
 import uk.gov.eastlothian.gowalk.model.Area;
+import uk.gov.eastlothian.gowalk.model.PackedPath;
 import uk.gov.eastlothian.gowalk.model.Route;
+import uk.gov.eastlothian.gowalk.model.RouteDetail;
 import uk.gov.eastlothian.gowalk.model.Wildlife;
 
 public class RouteDetailActivity extends MainMenuActivity {
@@ -57,9 +59,23 @@ public class RouteDetailActivity extends MainMenuActivity {
      */
     public static class RouteDetailFragment extends Fragment implements LoaderManager.LoaderCallbacks<Cursor> {
 
-        static final int AREA_QUERY_ID = 0;
-        static final int ROUTE_QUERY_ID = 1;
-        static final int WILDLIFE_QUERY_ID = 2;
+        static final int DETAIL_QUERY_ID = 0;
+
+        // projection for the route, only what is shown on the screen
+        private static final String[] ROUTE_PROJECTION = new String[] {
+                WalksContract.RouteEntry._ID,
+                WalksContract.RouteEntry.COLUMN_ROUTE_NUMBER,
+                WalksContract.RouteEntry.COLUMN_COORDINATES,
+                WalksContract.RouteEntry.COLUMN_DESCRIPTION,
+                WalksContract.RouteEntry.COLUMN_LENGTH,
+                WalksContract.RouteEntry.COLUMN_SURFACE,
+                WalksContract.RouteEntry.COLUMN_CENTRE_LAT,
+                WalksContract.RouteEntry.COLUMN_CENTRE_LNG,
+                WalksContract.RouteEntry.COLUMN_START_LAT,
+                WalksContract.RouteEntry.COLUMN_START_LNG,
+                WalksContract.RouteEntry.COLUMN_END_LAT,
+                WalksContract.RouteEntry.COLUMN_END_LNG
+        };
 
         TextView routeDescriptionView;
         TextView areaDescriptionView;
@@ -116,10 +132,8 @@ public class RouteDetailActivity extends MainMenuActivity {
             surfaceLabel = (TextView) rootView.findViewById(R.id.route_detail_accessibility_label);
             wildlifeLabel = (TextView) rootView.findViewById(R.id.route_detail_wildlife_label);
 
-            // set up a query to get the route information
-            getLoaderManager().initLoader(AREA_QUERY_ID, null, this);
-            getLoaderManager().initLoader(ROUTE_QUERY_ID, null, this);
-            getLoaderManager().initLoader(WILDLIFE_QUERY_ID, null, this);
+            // set up a query to get the route, its area and its wildlife together
+            getLoaderManager().initLoader(DETAIL_QUERY_ID, null, this);
 
             // set up the badge button
             Button badgeButton = (Button) rootView.findViewById(R.id.route_detail_badge_button);
@@ -137,6 +151,10 @@ public class RouteDetailActivity extends MainMenuActivity {
         }
 
         void showStartInMapsApp() {
+            LatLng start = route == null ? null : route.startPoint();
+            if (start == null) {
+                return;
+            }
             String label = "Start";
             try {
                 label = URLEncoder.encode("Start of Route " + route.getRouteNumber(), "utf-8");
@@ -144,7 +162,7 @@ public class RouteDetailActivity extends MainMenuActivity {
                 // e.printStackTrace();
             }
             String uri = String.format(Locale.ENGLISH, "geo:0,0?q=%f,%f(%s)",
-                    route.startPoint().latitude, route.startPoint().longitude, label);
+                    start.latitude, start.longitude, label);
 
             Intent intent = new Intent(Intent.ACTION_VIEW, Uri.parse(uri));
             getActivity().startActivity(intent);
@@ -154,19 +172,9 @@ public class RouteDetailActivity extends MainMenuActivity {
         public Loader<Cursor> onCreateLoader(int id, Bundle args) {
             Loader<Cursor> rtnCursor;
             switch (id) {
-                case AREA_QUERY_ID: {
-                    Uri uri = WalksContract.AreaEntry.buildAreaUri(areaId);
-                    rtnCursor = new CursorLoader(getActivity(), uri, null, null, null, null);
-                    break;
-                }
-                case ROUTE_QUERY_ID: {
-                    Uri uri = WalksContract.RouteEntry.buildRouteUri(routeId);
-                    rtnCursor = new CursorLoader(getActivity(), uri, null, null, null, null);
-                    break;
-                }
-                case WILDLIFE_QUERY_ID: {
-                    Uri uri = WalksContract.RouteEntry.buildWildlifeOnRouteUri(routeId);
-                    rtnCursor = new CursorLoader(getActivity(), uri, null, null, null, null);
+                case DETAIL_QUERY_ID: {
+                    Uri uri = WalksContract.RouteEntry.buildRouteDetailUri(routeId, areaId);
+                    rtnCursor = new CursorLoader(getActivity(), uri, ROUTE_PROJECTION, null, null, null);
                     break;
                 }
                 default:
@@ -178,18 +186,21 @@ public class RouteDetailActivity extends MainMenuActivity {
         @Override
         public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
             switch (loader.getId()) {
-                case AREA_QUERY_ID:
-                    area = Area.fromCursor(data).get(0);
-                    bindArea(area);
-                    break;
-                case ROUTE_QUERY_ID:
-                    route = Route.fromCursor(data).get(0);
-                    bindRoute(route);
-                    break;
-                case WILDLIFE_QUERY_ID:
-                    wildlife = Wildlife.fromCursor(data);
+                case DETAIL_QUERY_ID: {
+                    RouteDetail detail = RouteDetail.fromCursor(data);
+                    area = detail.getArea();
+                    route = detail.getRoute();
+                    wildlife = detail.getWildlife();
+                    if (area != null) {
+                        bindArea(area);
+                    }
+                    if (route != null) {
+                        bindRoute(route);
+                    }
+                    wildlifeInsertPoint.removeAllViews();
                     bindWildlife();
                     break;
+                }
             }
         }
 
@@ -218,22 +229,31 @@ public class RouteDetailActivity extends MainMenuActivity {
                 mMap.addMarker(new MarkerOptions()
                         .position(new LatLng(55.9552045, -2.7843538)).title("Haddington"));
 
-                // add marker for start and end
-                mMap.addMarker(new MarkerOptions().position(route.startPoint()).title("Start"));
-                mMap.addMarker(new MarkerOptions().position(route.endPoint()).title("End"));
+                // add marker for start and end, a route without any geometry has neither
+                LatLng start = route.startPoint();
+                LatLng end = route.endPoint();
+                if (start != null && end != null) {
+                    mMap.addMarker(new MarkerOptions().position(start).title("Start"));
+                    mMap.addMarker(new MarkerOptions().position(end).title("End"));
+                }
 
-                // zoom in on East Lothian
-                CameraUpdate center = CameraUpdateFactory.newLatLng(route.centrePoint());
-                CameraUpdate zoom = CameraUpdateFactory.zoomTo(13);
-                mMap.moveCamera(center);
-                mMap.animateCamera(zoom);
+                // zoom in on the route, or stay on East Lothian if there's nothing to show
+                LatLng centre = route.centrePoint();
+                if (centre != null) {
+                    CameraUpdate center = CameraUpdateFactory.newLatLng(centre);
+                    CameraUpdate zoom = CameraUpdateFactory.zoomTo(13);
+                    mMap.moveCamera(center);
+                    mMap.animateCamera(zoom);
+                }
 
-                // draw the route
+                // draw the route, a polyline for each of it's lines
                 int color = AreaColors.getAreaColor(getActivity(), areaId);
-                PolylineOptions polylineOptions = new PolylineOptions();
-                polylineOptions.addAll(route.getCoordinates());
-                polylineOptions.color(color);
-                mMap.addPolyline(polylineOptions);
+                PackedPath path = route.getPath();
+                for (int part = 0; part < path.getPartCount(); ++part) {
+                    PolylineOptions polylineOptions = path.toPolylineOptions(part);
+                    polylineOptions.color(color);
+                    mMap.addPolyline(polylineOptions);
+                }
             }
 
             // bind accessibility
@@ -0,0 +1,218 @@
+package uk.gov.eastlothian.gowalk.ui;
+
+import android.content.Context;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.CameraPosition;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.maps.model.Polyline;
+import com.google.android.gms.maps.model.PolylineOptions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import uk.gov.eastlothian.gowalk.model.PackedPath;
+import uk.gov.eastlothian.gowalk.model.Route;
+
+/**
+ * Keeps polylines on the map for the routes that are in view, keyed by route id.
+ *
+ * Call update once the camera has stopped moving: routes that have come into
+ * view are added, routes that have left it are removed and the routes that
+ * stay are redrawn if the zoom needs a different level of detail.  New data
+ * from the loader is diffed against what is already drawn, so reloading never
+ * duplicates a polyline.  At most MAX_POLYLINES are kept, the ones nearest
+ * the centre of the view win.
+ */
+public class RouteOverlayManager {
+
+    // the most polylines kept on the map, one for each part of a route
+    public static final int MAX_POLYLINES = 500;
+
+    // zoom levels at which more detailed routes are drawn, see PathSimplifier
+    private static final float MEDIUM_DETAIL_ZOOM = 12.0f;
+    private static final float FULL_DETAIL_ZOOM = 14.0f;
+
+    // routes this far outside the view (as a fraction of its size) are kept so small pans don't redraw
+    private static final double VIEW_MARGIN = 0.25;
+
+    private final Context mContext;
+    private final GoogleMap mMap;
+    private final Map<Long, Route> mRoutes = new LinkedHashMap<Long, Route>();
+    // the polylines of each route on the map, one per part
+    private final Map<Long, Polyline[]> mPolylines = new HashMap<Long, Polyline[]>();
+    // the level of detail the polylines on the map are drawn at
+    private int mDetail = -1;
+    // the most detailed path the routes were queried with
+    private int mMaxDetail = Route.DETAIL_LOW;
+
+    public RouteOverlayManager(Context context, GoogleMap map) {
+        mContext = context;
+        mMap = map;
+    }
+
+    /**
+     * Replaces the routes that can be drawn.  Routes that are already on the
+     * map and still there keep their polylines, routes that have gone are
+     * removed.  maxDetail is the most detailed path the routes were queried
+     * with, a zoom that needs more is drawn at that level until they are
+     * queried again.
+     */
+    public void setRoutes(List<Route> routes, int maxDetail) {
+        Set<Long> oldIds = new HashSet<Long>(mRoutes.keySet());
+        mRoutes.clear();
+        for (Route route : routes) {
+            mRoutes.put(route.getId(), route);
+            oldIds.remove(route.getId());
+        }
+        for (Long id : oldIds) {
+            remove(id);
+        }
+        // a route still on the map may have new geometry, so redraw them all at the next update
+        mDetail = -1;
+        mMaxDetail = maxDetail;
+        update();
+    }
+
+    /**
+     * Brings the polylines on the map in line with the current camera.
+     */
+    public void update() {
+        CameraPosition position = mMap.getCameraPosition();
+        LatLngBounds bounds = mMap.getProjection().getVisibleRegion().latLngBounds;
+        final LatLng target = position.target;
+        int detail = Math.min(detailForZoom(position.zoom), mMaxDetail);
+
+        double latMargin = (bounds.northeast.latitude - bounds.southwest.latitude) * VIEW_MARGIN;
+        double lngMargin = (bounds.northeast.longitude - bounds.southwest.longitude) * VIEW_MARGIN;
+        double minLat = bounds.southwest.latitude - latMargin;
+        double maxLat = bounds.northeast.latitude + latMargin;
+        double minLng = bounds.southwest.longitude - lngMargin;
+        double maxLng = bounds.northeast.longitude + lngMargin;
+
+        // the routes in view, nearest the centre first
+        List<Route> inView = new ArrayList<Route>();
+        for (Route route : mRoutes.values()) {
+            if (route.getMinLat() <= maxLat && route.getMaxLat() >= minLat
+                    && route.getMinLng() <= maxLng && route.getMaxLng() >= minLng) {
+                inView.add(route);
+            }
+        }
+        final double lngScale = Math.cos(Math.toRadians(target.latitude));
+        Collections.sort(inView, new Comparator<Route>() {
+            @Override
+            public int compare(Route lhs, Route rhs) {
+                return Double.compare(distanceSquared(lhs, target, lngScale),
+                        distanceSquared(rhs, target, lngScale));
+            }
+        });
+
+        Set<Long> keep = new HashSet<Long>();
+        int polylines = 0;
+        for (Route route : inView) {
+            polylines += route.getPath(detail).getPartCount();
+            if (polylines > MAX_POLYLINES) {
+                break;
+            }
+            keep.add(route.getId());
+        }
+
+        // remove what has left the view, then add or redraw what is in it
+        Iterator<Long> ids = mPolylines.keySet().iterator();
+        while (ids.hasNext()) {
+            Long id = ids.next();
+            if (!keep.contains(id)) {
+                for (Polyline line : mPolylines.get(id)) {
+                    line.remove();
+                }
+                ids.remove();
+            }
+        }
+        for (Long id : keep) {
+            Route route = mRoutes.get(id);
+            Polyline[] lines = mPolylines.get(id);
+            if (lines == null) {
+                mPolylines.put(id, add(route, detail));
+            } else if (detail != mDetail) {
+                PackedPath path = route.getPath(detail);
+                if (path.getPartCount() == lines.length) {
+                    for (int part = 0; part < lines.length; ++part) {
+                        lines[part].setPoints(path.asLatLngs(part));
+                    }
+                } else {
+                    remove(id);
+                    mPolylines.put(id, add(route, detail));
+                }
+            }
+        }
+        mDetail = detail;
+    }
+
+    /**
+     * Removes every polyline from the map.
+     */
+    public void clear() {
+        for (Polyline[] lines : mPolylines.values()) {
+            for (Polyline line : lines) {
+                line.remove();
+            }
+        }
+        mPolylines.clear();
+    }
+
+    public int getPolylineCount() {
+        int rtn = 0;
+        for (Polyline[] lines : mPolylines.values()) {
+            rtn += lines.length;
+        }
+        return rtn;
+    }
+
+    // private
+
+    private Polyline[] add(Route route, int detail) {
+        int color = AreaColors.getAreaColor(mContext, route.getPrimaryAreaId());
+        PackedPath path = route.getPath(detail);
+        Polyline[] lines = new Polyline[path.getPartCount()];
+        for (int part = 0; part < lines.length; ++part) {
+            PolylineOptions lineOptions = path.toPolylineOptions(part);
+            lineOptions.color(color);
+            lines[part] = mMap.addPolyline(lineOptions);
+        }
+        return lines;
+    }
+
+    private void remove(Long id) {
+        Polyline[] lines = mPolylines.remove(id);
+        if (lines != null) {
+            for (Polyline line : lines) {
+                line.remove();
+            }
+        }
+    }
+
+    // from the centre of a route's bounding box to the target, in squared degrees of latitude
+    private static double distanceSquared(Route route, LatLng target, double lngScale) {
+        double dLat = (route.getMinLat() + route.getMaxLat()) / 2 - target.latitude;
+        double dLng = ((route.getMinLng() + route.getMaxLng()) / 2 - target.longitude) * lngScale;
+        return dLat * dLat + dLng * dLng;
+    }
+
+    static int detailForZoom(float zoom) {
+        if (zoom >= FULL_DETAIL_ZOOM) {
+            return Route.DETAIL_FULL;
+        } else if (zoom >= MEDIUM_DETAIL_ZOOM) {
+            return Route.DETAIL_MEDIUM;
+        }
+        return Route.DETAIL_LOW;
+    }
+}
@@ -3,7 +3,6 @@ package uk.gov.eastlothian.gowalk.ui;
 import android.app.Activity;
 import android.content.Intent;
 import android.graphics.drawable.GradientDrawable;
-import android.graphics.drawable.ShapeDrawable;
 import android.support.v4.app.Fragment;
 import android.content.Context;
 import android.database.Cursor;
@@ -13,16 +12,15 @@ import android.support.v4.app.FragmentActivity;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
-import android.util.Log;
-import android.util.SparseArray;
-import android.view.Display;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.BaseExpandableListAdapter;
 import android.widget.ExpandableListView;
-import android.widget.SimpleCursorTreeAdapter;
 import android.widget.TextView;
 
+import java.util.Arrays;
+
 import uk.gov.eastlothian.gowalk.R;
 import uk.gov.eastlothian.gowalk.data.WalksContract;
 
@@ -31,19 +29,15 @@ public class RoutesListFragment extends Fragment implements LoaderManager.Loader
     // log tag
     private final String LOG_TAG = getClass().getSimpleName().toString();
 
-    // projection for the query to get the areas
-    private static final String[] AREA_PROJECTION = new String[] {
-            WalksContract.AreaEntry._ID,
-            WalksContract.AreaEntry.COLUMN_AREA_NAME
-    };
+    // loader for every area with its routes
+    private static final int ROUTES_FOR_AREAS_QUERY_ID = -1;
 
-    // projection for the query to get the routes for an area
+    // projection of the routes, each row also has the id and name of its area
     private static final String[] ROUTES_PROJECTION = new String[] {
             WalksContract.RouteEntry._ID,
             WalksContract.RouteEntry.COLUMN_ROUTE_NUMBER,
             WalksContract.RouteEntry.COLUMN_DESCRIPTION,
-            WalksContract.RouteEntry.COLUMN_LENGTH,
-            WalksContract.RouteEntry.COLUMN_PRIMARY_AREA
+            WalksContract.RouteEntry.COLUMN_LENGTH
     };
 
     // adapter for the list view
@@ -64,26 +58,7 @@ public class RoutesListFragment extends Fragment implements LoaderManager.Loader
         super.onActivityCreated(savedInstanceState);
 
         // bind the view and the adapter
-        mRoutesAdapter = new RoutesListAdapter(getActivity(),
-            this,
-            R.layout.routes_list_group,
-            R.layout.routes_list_child,
-            new String[] {
-                WalksContract.AreaEntry.COLUMN_AREA_NAME
-            },
-            new int[] {
-                R.id.routes_list_group_title_text
-            },
-            new String[] {
-                WalksContract.RouteEntry.COLUMN_ROUTE_NUMBER,
-                WalksContract.RouteEntry.COLUMN_DESCRIPTION,
-                WalksContract.RouteEntry.COLUMN_LENGTH
-            },
-            new int[] {
-                R.id.routes_list_child_route_num_text,
-                R.id.routes_list_child_description,
-                R.id.routes_list_child_length
-            });
+        mRoutesAdapter = new RoutesListAdapter(getActivity());
         mListView.setAdapter(mRoutesAdapter);
 
         // set up the listener for when user clicks on child
@@ -91,12 +66,9 @@ public class RoutesListFragment extends Fragment implements LoaderManager.Loader
             @Override
             public boolean onChildClick(ExpandableListView listView, View view,
                                         int groupPos, int childPos, long id) {
-                int areaId = mRoutesAdapter.getAreaIdFromGroupPos(groupPos); // TODO: change the indices over to longs from ints to avoid this
-                Long routeId = mRoutesAdapter.getRouteId(areaId, childPos);
-
                 Intent intent = new Intent(getActivity(), RouteDetailActivity.class);
-                intent.putExtra("route_id", routeId);
-                intent.putExtra("area_id", new Long(areaId)); // TODO: change to a long all the way though
+                intent.putExtra("route_id", mRoutesAdapter.getChildId(groupPos, childPos));
+                intent.putExtra("area_id", mRoutesAdapter.getGroupId(groupPos));
                 startActivity(intent);
                 return false;
             }
@@ -104,11 +76,11 @@ public class RoutesListFragment extends Fragment implements LoaderManager.Loader
 
         // set up the loaded based on the loader state
         LoaderManager loaderManager = ((FragmentActivity)getActivity()).getSupportLoaderManager();
-        Loader<Cursor> loader = loaderManager.getLoader(-1);
+        Loader<Cursor> loader = loaderManager.getLoader(ROUTES_FOR_AREAS_QUERY_ID);
         if (loader != null && !loader.isReset()) {
-            loaderManager.restartLoader(-1, null, this);
+            loaderManager.restartLoader(ROUTES_FOR_AREAS_QUERY_ID, null, this);
         } else {
-            loaderManager.initLoader(-1, null, this);
+            loaderManager.initLoader(ROUTES_FOR_AREAS_QUERY_ID, null, this);
         }
     }
 
@@ -118,138 +90,164 @@ public class RoutesListFragment extends Fragment implements LoaderManager.Loader
         CursorLoader cursorLoader = null;
         Activity activity = getActivity();
         if (activity != null) {
-            if (id != -1) {
-                // create a cursor that gets all the routes in the specified area
-                Uri routesUri = WalksContract.AreaEntry.buildRoutesInAreaUri(id);
-                cursorLoader = new CursorLoader(getActivity(), routesUri, ROUTES_PROJECTION,
-                        null, null, null);
-            } else {
-                // create a cursor that gets all the areas
-                Uri areasUri = WalksContract.AreaEntry.CONTENT_URI;
-                cursorLoader = new CursorLoader(getActivity(), areasUri, null, // AREA_PROJECTION,
-                        null, null, null);
-            }
+            // one cursor with all the areas and their routes, in order of area
+            Uri uri = WalksContract.AreaEntry.getRoutesForAreas();
+            cursorLoader = new CursorLoader(activity, uri, ROUTES_PROJECTION, null, null, null);
         }
         return cursorLoader;
     }
 
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        int count = data.getCount();
-        //Log.d(LOG_TAG, "" + count);
-
-        int id = loader.getId();
-        if(id != -1) {
-            if (!data.isClosed()) {
-                SparseArray<Integer> areaMap = mRoutesAdapter.getAreaMap();
-                try {
-                    int areaPos = areaMap.get(id);
-                    mRoutesAdapter.setChildrenCursor(areaPos, data);
-                } catch (NullPointerException e) {
-                    //Log.d(LOG_TAG, "Adapter expired, try again on the next query: "
-                     //               + e.getMessage());
-                }
-            }
-        } else {
-            mRoutesAdapter.setGroupCursor(data);
-        }
+        mRoutesAdapter.swapCursor(data);
     }
 
     @Override
     public void onLoaderReset(Loader<Cursor> loader) {
-        int id = loader.getId();
-        if (id != -1) {
-            // it's a child cursor
-            try {
-                mRoutesAdapter.setChildrenCursor(id, null);
-            } catch (NullPointerException e) {
-                //Log.w(LOG_TAG, "Adapter expired, try again on the next query: " + e.getMessage());
+        mRoutesAdapter.swapCursor(null);
+    }
+
+    /*
+     * The areas as groups and their routes as children, all from the one cursor of
+     * the routes for areas query.  The cursor's rows are in order of area, so the
+     * children of a group are the rows from where its area starts up to where the
+     * next one does.  Those offsets are worked out once when the cursor arrives,
+     * then expanding a group just moves the cursor.
+     */
+    public static class RoutesListAdapter extends BaseExpandableListAdapter {
+        private final Context mContext;
+        private final LayoutInflater mInflater;
+        private Cursor mCursor;
+        // mGroupStarts[group] is the position of the first row of the group, then one past the last row
+        private int[] mGroupStarts = new int[] { 0 };
+        // the number of children of each group, 0 for an area without routes
+        private int[] mChildCounts = new int[0];
+        private int mAreaIdIndex;
+        private int mAreaNameIndex;
+        private int mRouteIdIndex;
+        private int mRouteNumberIndex;
+        private int mDescriptionIndex;
+        private int mLengthIndex;
+
+        public RoutesListAdapter(Context context) {
+            mContext = context;
+            mInflater = LayoutInflater.from(context);
+        }
+
+        // the cursor stays open, it belongs to the loader
+        public void swapCursor(Cursor cursor) {
+            mCursor = cursor;
+            if (cursor == null) {
+                mGroupStarts = new int[] { 0 };
+                mChildCounts = new int[0];
+                notifyDataSetInvalidated();
+                return;
             }
-        } else {
-            // it's a parent cursor
-            mRoutesAdapter.setGroupCursor(null);
+            mAreaIdIndex = cursor.getColumnIndex(WalksContract.RouteInAreaEntry.COLUMN_AREA_KEY);
+            mAreaNameIndex = cursor.getColumnIndex(WalksContract.AreaEntry.COLUMN_AREA_NAME);
+            mRouteIdIndex = cursor.getColumnIndex(WalksContract.RouteEntry._ID);
+            mRouteNumberIndex = cursor.getColumnIndex(WalksContract.RouteEntry.COLUMN_ROUTE_NUMBER);
+            mDescriptionIndex = cursor.getColumnIndex(WalksContract.RouteEntry.COLUMN_DESCRIPTION);
+            mLengthIndex = cursor.getColumnIndex(WalksContract.RouteEntry.COLUMN_LENGTH);
+
+            int[] starts = new int[cursor.getCount() + 1];
+            int[] childCounts = new int[cursor.getCount()];
+            int groupCount = 0;
+            long lastAreaId = 0;
+            for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                long areaId = cursor.getLong(mAreaIdIndex);
+                if (groupCount == 0 || areaId != lastAreaId) {
+                    starts[groupCount++] = cursor.getPosition();
+                    lastAreaId = areaId;
+                }
+                if (!cursor.isNull(mRouteIdIndex)) {
+                    ++childCounts[groupCount - 1];
+                }
+            }
+            starts[groupCount] = cursor.getCount();
+            mGroupStarts = Arrays.copyOf(starts, groupCount + 1);
+            mChildCounts = Arrays.copyOf(childCounts, groupCount);
+            notifyDataSetChanged();
         }
-    }
 
-    public static class RoutesListAdapter extends SimpleCursorTreeAdapter {
-        private RoutesActivity mActivity;
-        private RoutesListFragment mFragment;
-        private SparseArray<Integer> mGroupMap;
-        private SparseArray<SparseArray<Long>> mChildMaps;
-
-        public RoutesListAdapter(Context context, RoutesListFragment fragment,
-                                 int groupLayout, int childLayout,
-                                 String[] groupFrom, int[] groupTo,
-                                 String[] childrenFrom, int[] childrenTo) {
-            super(context, null, groupLayout, groupFrom,
-                  groupTo, childLayout, childrenFrom, childrenTo);
-            mActivity = (RoutesActivity) context;
-            mFragment = fragment;
-            mGroupMap = new SparseArray<Integer>();
-            mChildMaps = new SparseArray<SparseArray<Long>>();
+        @Override
+        public int getGroupCount() {
+            return mChildCounts.length;
         }
 
         @Override
-        protected void bindChildView(View view, Context context, Cursor cursor, boolean isLastChild) {
-            super.bindChildView(view, context, cursor, isLastChild);
-            View circle = view.findViewById(R.id.list_item_circle);
-            GradientDrawable shape = (GradientDrawable) circle.getBackground();
+        public int getChildrenCount(int groupPos) {
+            return mChildCounts[groupPos];
+        }
 
-            int areaIdColIndex = cursor.getColumnIndex(WalksContract.RouteInAreaEntry.COLUMN_AREA_KEY);
-            long areaId = cursor.getLong(areaIdColIndex);
-            int colorId = AreaColors.getAreaColor(mActivity, areaId);
-            shape.setStroke(3, colorId);
-            shape.setColor(0);
+        @Override
+        public Cursor getGroup(int groupPos) {
+            mCursor.moveToPosition(mGroupStarts[groupPos]);
+            return mCursor;
+        }
 
-            // filter out the undrawable characters from the route descriptions
-            TextView lengthView = (TextView) view.findViewById(R.id.routes_list_child_length);
-            String lengthText = lengthView.getText().toString() + "m";
-            lengthView.setText(lengthText);
-
-            // insert the id of the child into a map at this position
-            int childPos = cursor.getPosition();
-            int childIdColIndex = cursor.getColumnIndex(WalksContract.RouteEntry._ID);
-            long childId = cursor.getLong(childIdColIndex);
-            SparseArray<Long> childMap = mChildMaps.get((int)areaId, new SparseArray<Long>());
-            childMap.put(childPos, childId);
-            mChildMaps.put((int)areaId, childMap);
+        @Override
+        public Cursor getChild(int groupPos, int childPos) {
+            mCursor.moveToPosition(mGroupStarts[groupPos] + childPos);
+            return mCursor;
         }
 
+        // the area id
         @Override
-        protected void bindGroupView(View view, Context context, Cursor cursor, boolean isExpanded) {
-            super.bindGroupView(view, context, cursor, isExpanded);
+        public long getGroupId(int groupPos) {
+            return getGroup(groupPos).getLong(mAreaIdIndex);
+        }
 
-            View rect = view.findViewById(R.id.list_group_rectangle);
-            int keyIndex = cursor.getColumnIndex(WalksContract.AreaEntry._ID);
-            long id = cursor.getLong(keyIndex);
-            rect.setBackgroundColor(AreaColors.getAreaColor(mActivity, id));
+        // the route id
+        @Override
+        public long getChildId(int groupPos, int childPos) {
+            return getChild(groupPos, childPos).getLong(mRouteIdIndex);
         }
 
         @Override
-        protected Cursor getChildrenCursor(Cursor cursor) {
-            int areaPos = cursor.getPosition();
-            int areaId = cursor.getInt(cursor.getColumnIndex(WalksContract.AreaEntry._ID));
-            mGroupMap.put(areaId, areaPos);
-            Loader loader = mActivity.getSupportLoaderManager().getLoader(areaId);
-            if (loader != null && !loader.isReset()) {
-                mActivity.getSupportLoaderManager().restartLoader(areaId, null, mFragment);
-            } else {
-                mActivity.getSupportLoaderManager().initLoader(areaId, null, mFragment);
-            }
-            return null;
+        public boolean hasStableIds() {
+            return true;
         }
 
-        public SparseArray<Integer> getAreaMap() {
-            return mGroupMap;
+        @Override
+        public boolean isChildSelectable(int groupPos, int childPos) {
+            return true;
         }
 
-        public Long getRouteId(int areaId, int childPos) {
-            return mChildMaps.get(areaId).get(childPos);
+        @Override
+        public View getGroupView(int groupPos, boolean isExpanded, View convertView, ViewGroup parent) {
+            View view = convertView != null
+                    ? convertView
+                    : mInflater.inflate(R.layout.routes_list_group, parent, false);
+            Cursor cursor = getGroup(groupPos);
+            TextView titleView = (TextView) view.findViewById(R.id.routes_list_group_title_text);
+            titleView.setText(cursor.getString(mAreaNameIndex));
+
+            View rect = view.findViewById(R.id.list_group_rectangle);
+            rect.setBackgroundColor(AreaColors.getAreaColor(mContext, cursor.getLong(mAreaIdIndex)));
+            return view;
         }
 
-        private int getAreaIdFromGroupPos(int groupPos) {
-            int index = mGroupMap.indexOfValue(groupPos);
-            return mGroupMap.keyAt(index);
+        @Override
+        public View getChildView(int groupPos, int childPos, boolean isLastChild,
+                                 View convertView, ViewGroup parent) {
+            View view = convertView != null
+                    ? convertView
+                    : mInflater.inflate(R.layout.routes_list_child, parent, false);
+            Cursor cursor = getChild(groupPos, childPos);
+            ((TextView) view.findViewById(R.id.routes_list_child_route_num_text))
+                    .setText(cursor.getString(mRouteNumberIndex));
+            ((TextView) view.findViewById(R.id.routes_list_child_description))
+                    .setText(cursor.getString(mDescriptionIndex));
+            ((TextView) view.findViewById(R.id.routes_list_child_length))
+                    .setText(cursor.getString(mLengthIndex) + "m");
+
+            View circle = view.findViewById(R.id.list_item_circle);
+            GradientDrawable shape = (GradientDrawable) circle.getBackground();
+            int colorId = AreaColors.getAreaColor(mContext, cursor.getLong(mAreaIdIndex));
+            shape.setStroke(3, colorId);
+            shape.setColor(0);
+            return view;
         }
     }
-}
\ No newline at end of file
+}
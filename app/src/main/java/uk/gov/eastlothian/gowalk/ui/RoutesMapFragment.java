@@ -5,6 +5,7 @@ package uk.gov.eastlothian.gowalk.ui;
 import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
@@ -22,11 +23,10 @@ import com.google.android.gms.maps.CameraUpdate;
 import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.SupportMapFragment;
+import com.google.android.gms.maps.model.CameraPosition;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.MarkerOptions;
 import com.google.android.gms.maps.model.PolygonOptions;
-import com.google.android.gms.maps.model.PolylineOptions;
-import com.google.maps.android.PolyUtil;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -34,6 +34,7 @@ import org.json.JSONObject;
 
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import uk.gov.eastlothian.gowalk.R;
@@ -47,18 +48,35 @@ public class RoutesMapFragment extends Fragment implements LoaderManager.LoaderC
 
     private static final String LOG_TAG = RoutesMapFragment.class.getSimpleName();
 
-    // projection for the query to get the routes for an area
+    // projection for the query to get the routes for an area, the full coordinates
+    // are only added once the map has been zoomed in far enough to draw them
     private static final String[] ROUTES_PROJECTION = new String[] {
             WalksContract.RouteEntry._ID,
             WalksContract.RouteEntry.COLUMN_ROUTE_NUMBER,
-            WalksContract.RouteEntry.COLUMN_COORDINATES,
-            WalksContract.RouteEntry.COLUMN_DESCRIPTION,
+            WalksContract.RouteEntry.COLUMN_COORDINATES_LOW,
+            WalksContract.RouteEntry.COLUMN_COORDINATES_MEDIUM,
             WalksContract.RouteEntry.COLUMN_PRIMARY_AREA,
-            WalksContract.RouteEntry.COLUMN_LENGTH
+            WalksContract.RouteEntry.COLUMN_LENGTH,
+            WalksContract.RouteEntry.COLUMN_MIN_LAT,
+            WalksContract.RouteEntry.COLUMN_MIN_LNG,
+            WalksContract.RouteEntry.COLUMN_MAX_LAT,
+            WalksContract.RouteEntry.COLUMN_MAX_LNG
     };
 
+    // projection for the query to find the route nearest a tap
+    private static final String[] TAPPED_ROUTE_PROJECTION = new String[] {
+            WalksContract.RouteEntry._ID,
+            WalksContract.RouteEntry.COLUMN_PRIMARY_AREA
+    };
+
+    // how close a tap has to be to a route to select it
+    private static final double TAP_TOLERANCE_METRES = 100.0;
+
     GoogleMap mMap;
     List<Route> routes = new ArrayList<Route>();
+    RouteOverlayManager mOverlays;
+    // whether the routes are queried with their full coordinates
+    boolean mFullDetail = false;
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
@@ -85,17 +103,24 @@ public class RoutesMapFragment extends Fragment implements LoaderManager.LoaderC
             mMap.setOnMapClickListener(new GoogleMap.OnMapClickListener() {
                 @Override
                 public void onMapClick(LatLng clickCoords) {
-                    for (Route route : routes) {
-                        if (PolyUtil.isLocationOnPath(clickCoords, route.getPolylineOptions().getPoints(), true, 100)) {
-                            long areaId = route.getPrimaryAreaId();
-                            if(areaId == -1) areaId = 0;
-
-                            Intent intent = new Intent(getActivity(), RouteDetailActivity.class);
-                            intent.putExtra("route_id", route.getId());
-                            intent.putExtra("area_id", areaId);
-                            //Log.d(LOG_TAG, "route_id: " + route.getId() + ", area_id: " + areaId);
-                            startActivity(intent);
-                        }
+                    // open the route nearest the tap, the provider's index of the routes
+                    // is built on the first query so keep it off the main thread
+                    new FindTappedRoute().execute(clickCoords);
+                }
+            });
+
+            // draw the routes in view once the camera stops, this version of the maps api
+            // only calls the camera change listener at the end of a movement
+            mOverlays = new RouteOverlayManager(getActivity(), mMap);
+            mMap.setOnCameraChangeListener(new GoogleMap.OnCameraChangeListener() {
+                @Override
+                public void onCameraChange(CameraPosition position) {
+                    mOverlays.update();
+                    if (!mFullDetail
+                            && RouteOverlayManager.detailForZoom(position.zoom) == Route.DETAIL_FULL) {
+                        // zoomed in far enough to draw the full coordinates, query them
+                        mFullDetail = true;
+                        getLoaderManager().restartLoader(0, null, RoutesMapFragment.this);
                     }
                 }
             });
@@ -106,6 +131,10 @@ public class RoutesMapFragment extends Fragment implements LoaderManager.LoaderC
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        // the map outlives this view, don't leave the routes on it
+        if (mOverlays != null) {
+            mOverlays.clear();
+        }
     }
 
     @Override
@@ -117,22 +146,19 @@ public class RoutesMapFragment extends Fragment implements LoaderManager.LoaderC
     @Override
     public Loader<Cursor> onCreateLoader(int id, Bundle args) {
         Uri routesUri = WalksContract.RouteEntry.CONTENT_URI;
-        return new CursorLoader(getActivity(), routesUri, ROUTES_PROJECTION, null, null, null);
+        String[] projection = ROUTES_PROJECTION;
+        if (mFullDetail) {
+            projection = Arrays.copyOf(ROUTES_PROJECTION, ROUTES_PROJECTION.length + 1);
+            projection[ROUTES_PROJECTION.length] = WalksContract.RouteEntry.COLUMN_COORDINATES;
+        }
+        return new CursorLoader(getActivity(), routesUri, projection, null, null, null);
     }
 
     @Override
     public void onLoadFinished(Loader<Cursor> cursorLoader, Cursor cursor) {
         routes = Route.fromCursor(cursor);
-        for (Route route : routes) {
-            PolylineOptions lineOptions = new PolylineOptions();
-            long primaryAreaId = route.getPrimaryAreaId();
-            int color = AreaColors.getAreaColor(getActivity(), primaryAreaId);
-            lineOptions.color(color);
-            lineOptions.addAll(route.getCoordinates());
-            route.setPolylineOptions(lineOptions);
-            if(mMap != null) {
-                mMap.addPolyline(lineOptions);
-            }
+        if (mOverlays != null) {
+            mOverlays.setRoutes(routes, mFullDetail ? Route.DETAIL_FULL : Route.DETAIL_MEDIUM);
         }
     }
 
@@ -141,4 +167,47 @@ public class RoutesMapFragment extends Fragment implements LoaderManager.LoaderC
         getLoaderManager().restartLoader(0, null, this);
     }
 
+    /*
+     * Asks the provider for the route nearest a tap and opens it, if there is
+     * one within TAP_TOLERANCE_METRES.
+     */
+    private class FindTappedRoute extends AsyncTask<LatLng, Void, Route> {
+
+        @Override
+        protected Route doInBackground(LatLng... taps) {
+            Uri uri = WalksContract.RouteEntry.buildNearestRoutesUri(taps[0].latitude, taps[0].longitude, 1)
+                    .buildUpon()
+                    .appendQueryParameter(WalksContract.RouteEntry.PARAM_MAX_DISTANCE,
+                            Double.toString(TAP_TOLERANCE_METRES))
+                    .build();
+            FragmentActivity activity = getActivity();
+            if (activity == null) {
+                return null;
+            }
+            Cursor cursor = activity.getContentResolver().query(uri, TAPPED_ROUTE_PROJECTION, null, null, null);
+            if (cursor == null) {
+                return null;
+            }
+            try {
+                List<Route> nearest = Route.fromCursor(cursor);
+                return nearest.isEmpty() ? null : nearest.get(0);
+            } finally {
+                cursor.close();
+            }
+        }
+
+        @Override
+        protected void onPostExecute(Route route) {
+            if (route != null && isAdded()) {
+                long areaId = route.getPrimaryAreaId();
+                if(areaId == -1) areaId = 0;
+
+                Intent intent = new Intent(getActivity(), RouteDetailActivity.class);
+                intent.putExtra("route_id", route.getId());
+                intent.putExtra("area_id", areaId);
+                //Log.d(LOG_TAG, "route_id: " + route.getId() + ", area_id: " + areaId);
+                startActivity(intent);
+            }
+        }
+    }
 }
@@ -10,7 +10,6 @@ import android.support.v4.app.FragmentActivity;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
-import android.text.Html;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.Menu;
@@ -55,6 +54,20 @@ public class WildlifeDetailActivity extends MainMenuActivity {
         static final int WILDLIFE_QUERY_ID = 0;
         static final int ROUTES_FOR_WILDLIFE_QUERY_ID = 1;
 
+        // projections for the queries, the routes are only shown as numbered circles
+        private static final String[] WILDLIFE_PROJECTION = new String[] {
+                WalksContract.WildlifeEntry._ID,
+                WalksContract.WildlifeEntry.COLUMN_WILDLIFE_NAME,
+                WalksContract.WildlifeEntry.COLUMN_DESCRIPTION,
+                WalksContract.WildlifeEntry.COLUMN_IMAGE_NAME
+        };
+
+        private static final String[] ROUTES_PROJECTION = new String[] {
+                WalksContract.RouteEntry._ID,
+                WalksContract.RouteEntry.COLUMN_ROUTE_NUMBER,
+                WalksContract.RouteEntry.COLUMN_PRIMARY_AREA
+        };
+
         long wildlifeId;
         List<Route> routes = new ArrayList<Route>();
         LayoutInflater inflater;
@@ -116,12 +129,12 @@ public class WildlifeDetailActivity extends MainMenuActivity {
             switch (id) {
                 case WILDLIFE_QUERY_ID: {
                     Uri uri = WalksContract.WildlifeEntry.buildWildLifeUri(wildlifeId);
-                    rtnCursor = new CursorLoader(getActivity(), uri, null, null, null, null);
+                    rtnCursor = new CursorLoader(getActivity(), uri, WILDLIFE_PROJECTION, null, null, null);
                     break;
                 }
                 case ROUTES_FOR_WILDLIFE_QUERY_ID: {
                     Uri uri = WalksContract.WildlifeEntry.buildRoutesFromWildlifeUri(wildlifeId);
-                    rtnCursor = new CursorLoader(getActivity(), uri, null, null, null, null);
+                    rtnCursor = new CursorLoader(getActivity(), uri, ROUTES_PROJECTION, null, null, null);
                     break;
                 }
             }
@@ -138,7 +151,7 @@ public class WildlifeDetailActivity extends MainMenuActivity {
                         wildlife = wildlifeList.get(0);
                         int imageId = wildlife.getImageResourceId(getActivity());
                         imageView.setImageResource(imageId);
-                        descriptionView.setText(Html.fromHtml(wildlife.getDescription()));
+                        descriptionView.setText(wildlife.getFormattedDescription());
                         getActivity().getActionBar().setTitle(wildlife.getCapitalisedName());
                     } else {
                         //Log.d(LOG_TAG, "Error loading wildlife.");
@@ -57,6 +57,13 @@ public class WildlifeGuideActivity extends MainMenuActivity {
 
         static final int WILDLIFE_QUERY_ID = 0;
 
+        // projection for the guide, just enough for the named thumbnails
+        private static final String[] WILDLIFE_PROJECTION = new String[] {
+                WalksContract.WildlifeEntry._ID,
+                WalksContract.WildlifeEntry.COLUMN_WILDLIFE_NAME,
+                WalksContract.WildlifeEntry.COLUMN_IMAGE_NAME
+        };
+
         List<Wildlife> wildlife;
 
         GridView gridView;
@@ -99,7 +106,7 @@ public class WildlifeGuideActivity extends MainMenuActivity {
         @Override
         public Loader<Cursor> onCreateLoader(int id, Bundle args) {
             Uri uri = WalksContract.WildlifeEntry.CONTENT_URI;
-            Loader<Cursor> rtnCursor = new CursorLoader(getActivity(), uri, null, null, null, null);
+            Loader<Cursor> rtnCursor = new CursorLoader(getActivity(), uri, WILDLIFE_PROJECTION, null, null, null);
             return rtnCursor;
         }
 
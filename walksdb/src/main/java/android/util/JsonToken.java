@@ -0,0 +1,18 @@
+package android.util;
+
+/**
+ * The tokens of android.util.JsonReader, for running the shared import code on
+ * a desktop jvm.
+ */
+public enum JsonToken {
+    BEGIN_ARRAY,
+    END_ARRAY,
+    BEGIN_OBJECT,
+    END_OBJECT,
+    NAME,
+    STRING,
+    NUMBER,
+    BOOLEAN,
+    NULL,
+    END_DOCUMENT
+}
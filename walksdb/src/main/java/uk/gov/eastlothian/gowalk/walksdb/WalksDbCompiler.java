@@ -0,0 +1,347 @@
+package uk.gov.eastlothian.gowalk.walksdb;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import uk.gov.eastlothian.gowalk.data.ImportReport;
+import uk.gov.eastlothian.gowalk.data.WalksImporter;
+import uk.gov.eastlothian.gowalk.data.WalksSchema;
+
+/**
+ * Builds walks.db from the source files in walksdb/src/data into the app's
+ * assets folder.  The source files aren't packaged with the app.
+ *
+ * Runs the same import pipeline as the app against a desktop sqlite driver,
+ * then indexes, analyzes and vacuums the database so the app only ever has
+ * to copy it into place.  Android's sqlite only reads sqlite_stat1, so the
+ * sqlite_stat4 table a desktop ANALYZE makes is dropped.  A manifest with the row counts and a checksum of
+ * the database is written alongside it.
+ *
+ * Usage: WalksDbCompiler &lt;source dir&gt; &lt;assets dir&gt;
+ */
+public class WalksDbCompiler {
+
+    public static final String DB_NAME = "walks.db";
+    public static final String MANIFEST_NAME = "walks_db_manifest.json";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: WalksDbCompiler <source dir> <assets dir>");
+            System.exit(1);
+        }
+        File sourceDir = new File(args[0]);
+        File assetsDir = new File(args[1]);
+        File dbFile = new File(assetsDir, DB_NAME);
+        File tmpFile = new File(assetsDir, DB_NAME + ".tmp");
+        if (tmpFile.exists() && !tmpFile.delete()) {
+            throw new IOException("Cannot delete " + tmpFile);
+        }
+
+        Map<String, Long> rowCounts = compile(sourceDir, tmpFile);
+
+        if (dbFile.exists() && !dbFile.delete()) {
+            throw new IOException("Cannot replace " + dbFile);
+        }
+        if (!tmpFile.renameTo(dbFile)) {
+            throw new IOException("Cannot rename " + tmpFile + " to " + dbFile);
+        }
+        writeManifest(new File(assetsDir, MANIFEST_NAME), dbFile, rowCounts);
+        System.out.println("Wrote " + dbFile + " " + rowCounts);
+    }
+
+    // imports the source files in sourceDir into a new database at dbFile and returns the row counts
+    private static Map<String, Long> compile(final File sourceDir, File dbFile) throws IOException, SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getAbsolutePath());
+        try {
+            Statement statement = connection.createStatement();
+            try {
+                connection.setAutoCommit(false);
+                statement.executeUpdate("CREATE TABLE android_metadata (locale TEXT)");
+                statement.executeUpdate("INSERT INTO android_metadata VALUES ('en_US')");
+                for (String sql : WalksSchema.CREATE_TABLES) {
+                    statement.executeUpdate(sql);
+                }
+
+                WalksImporter.Source source = new WalksImporter.Source() {
+                    @Override
+                    public InputStream open(String fileName) throws IOException {
+                        return new BufferedInputStream(new FileInputStream(new File(sourceDir, fileName)));
+                    }
+                };
+                JdbcTarget target = new JdbcTarget(connection);
+                try {
+                    ImportReport report = new WalksImporter(source, target).run();
+                    System.out.println(report);
+                } finally {
+                    target.close();
+                }
+
+                // the indexes are built once all the rows are in
+                for (String sql : WalksSchema.CREATE_INDEXES) {
+                    statement.executeUpdate(sql);
+                }
+                connection.commit();
+                connection.setAutoCommit(true);
+
+                statement.executeUpdate("ANALYZE");
+                statement.executeUpdate("DROP TABLE IF EXISTS sqlite_stat4");
+                statement.executeUpdate("PRAGMA user_version = " + WalksSchema.VERSION);
+                statement.executeUpdate("VACUUM");
+
+                Map<String, Long> rowCounts = new LinkedHashMap<String, Long>();
+                for (String table : WalksSchema.TABLES) {
+                    ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + table);
+                    try {
+                        rs.next();
+                        rowCounts.put(table, rs.getLong(1));
+                    } finally {
+                        rs.close();
+                    }
+                }
+                return rowCounts;
+            } finally {
+                statement.close();
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static void writeManifest(File manifestFile, File dbFile, Map<String, Long> rowCounts) throws IOException {
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(new FileOutputStream(manifestFile), "UTF-8"));
+        try {
+            writer.setIndent("  ");
+            writer.beginObject();
+            writer.name("database").value(DB_NAME);
+            writer.name("schema_version").value(WalksSchema.VERSION);
+            writer.name("size").value(dbFile.length());
+            writer.name("sha256").value(sha256(dbFile));
+            writer.name("row_counts").beginObject();
+            for (Map.Entry<String, Long> rowCount : rowCounts.entrySet()) {
+                writer.name(rowCount.getKey()).value(rowCount.getValue());
+            }
+            writer.endObject();
+            writer.endObject();
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String sha256(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /*
+     * Writes the imported rows straight into the database with prepared statements.
+     */
+    private static class JdbcTarget implements WalksImporter.Target {
+        private final Connection mConnection;
+        private final PreparedStatement mInsertRoute;
+        private final PreparedStatement mInsertWildlife;
+        private final PreparedStatement mInsertWildlifeOnRoute;
+        private final PreparedStatement mInsertArea;
+        private final PreparedStatement mInsertRouteInArea;
+        private final PreparedStatement mUpdatePrimaryArea;
+
+        private JdbcTarget(Connection connection) throws SQLException {
+            mConnection = connection;
+            mInsertRoute = connection.prepareStatement("INSERT INTO route (route_number, coordinates, "
+                    + "coordinates_low, coordinates_medium, path_type, length, surface, description, "
+                    + "primary_area, min_lat, min_lng, max_lat, max_lng, centre_lat, centre_lng, "
+                    + "start_lat, start_lng, end_lat, end_lng, point_count, measured_length) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, -1, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            mInsertWildlife = connection.prepareStatement("INSERT INTO wildlife (name, category, description, "
+                    + "image_name, when_seen) VALUES (?, ?, ?, ?, ?)");
+            mInsertWildlifeOnRoute = connection.prepareStatement(
+                    "INSERT INTO wildlife_on_route (wildlife_id, route_id) VALUES (?, ?)");
+            mInsertArea = connection.prepareStatement("INSERT INTO area (name) VALUES (?)");
+            mInsertRouteInArea = connection.prepareStatement(
+                    "INSERT INTO route_in_area (route_id, area_id) VALUES (?, ?)");
+            mUpdatePrimaryArea = connection.prepareStatement("UPDATE route SET primary_area = ? WHERE _id = ?");
+        }
+
+        @Override
+        public void insertRoutes(List<WalksImporter.RouteRow> routes) throws IOException {
+            try {
+                for (WalksImporter.RouteRow route : routes) {
+                    mInsertRoute.setInt(1, route.routeNumber);
+                    mInsertRoute.setBytes(2, route.coordinates);
+                    mInsertRoute.setBytes(3, route.coordinatesLow);
+                    mInsertRoute.setBytes(4, route.coordinatesMedium);
+                    mInsertRoute.setString(5, route.pathType);
+                    mInsertRoute.setInt(6, route.length);
+                    mInsertRoute.setString(7, route.surface);
+                    mInsertRoute.setString(8, route.description);
+                    setDouble(mInsertRoute, 9, route.minLat);
+                    setDouble(mInsertRoute, 10, route.minLng);
+                    setDouble(mInsertRoute, 11, route.maxLat);
+                    setDouble(mInsertRoute, 12, route.maxLng);
+                    setDouble(mInsertRoute, 13, route.centreLat);
+                    setDouble(mInsertRoute, 14, route.centreLng);
+                    setDouble(mInsertRoute, 15, route.startLat);
+                    setDouble(mInsertRoute, 16, route.startLng);
+                    setDouble(mInsertRoute, 17, route.endLat);
+                    setDouble(mInsertRoute, 18, route.endLng);
+                    mInsertRoute.setInt(19, route.pointCount);
+                    mInsertRoute.setDouble(20, route.measuredLength);
+                    mInsertRoute.executeUpdate();
+                }
+            } catch (SQLException e) {
+                throw new IOException(e);
+            }
+        }
+
+        // binds NULL for a value the route doesn't have
+        private static void setDouble(PreparedStatement statement, int index, Double value) throws SQLException {
+            if (value == null) {
+                statement.setNull(index, Types.REAL);
+            } else {
+                statement.setDouble(index, value);
+            }
+        }
+
+        @Override
+        public Map<Integer, Long> loadRouteIds() throws IOException {
+            Map<Integer, Long> routeIds = new HashMap<Integer, Long>();
+            try {
+                Statement statement = mConnection.createStatement();
+                try {
+                    ResultSet rs = statement.executeQuery("SELECT _id, route_number FROM route ORDER BY _id");
+                    while (rs.next()) {
+                        int routeNumber = rs.getInt(2);
+                        if (!routeIds.containsKey(routeNumber)) {
+                            routeIds.put(routeNumber, rs.getLong(1));
+                        }
+                    }
+                    rs.close();
+                } finally {
+                    statement.close();
+                }
+            } catch (SQLException e) {
+                throw new IOException(e);
+            }
+            return routeIds;
+        }
+
+        @Override
+        public long insertWildlife(WalksImporter.WildlifeRow wildlife) throws IOException {
+            try {
+                mInsertWildlife.setString(1, wildlife.name);
+                mInsertWildlife.setString(2, wildlife.category);
+                mInsertWildlife.setString(3, wildlife.description);
+                mInsertWildlife.setString(4, wildlife.imageName);
+                mInsertWildlife.setString(5, wildlife.whenSeen);
+                return insert(mInsertWildlife);
+            } catch (SQLException e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public void insertWildlifeOnRoutes(List<long[]> links) throws IOException {
+            insertLinks(mInsertWildlifeOnRoute, links);
+        }
+
+        @Override
+        public long insertArea(String name) throws IOException {
+            try {
+                mInsertArea.setString(1, name);
+                return insert(mInsertArea);
+            } catch (SQLException e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public void insertRoutesInAreas(List<long[]> links) throws IOException {
+            insertLinks(mInsertRouteInArea, links);
+        }
+
+        @Override
+        public void setPrimaryAreas(Map<Long, Long> primaryAreas) throws IOException {
+            try {
+                for (Map.Entry<Long, Long> primaryArea : primaryAreas.entrySet()) {
+                    mUpdatePrimaryArea.setLong(1, primaryArea.getValue());
+                    mUpdatePrimaryArea.setLong(2, primaryArea.getKey());
+                    mUpdatePrimaryArea.executeUpdate();
+                }
+            } catch (SQLException e) {
+                throw new IOException(e);
+            }
+        }
+
+        private void close() throws SQLException {
+            mInsertRoute.close();
+            mInsertWildlife.close();
+            mInsertWildlifeOnRoute.close();
+            mInsertArea.close();
+            mInsertRouteInArea.close();
+            mUpdatePrimaryArea.close();
+        }
+
+        private void insertLinks(PreparedStatement insert, List<long[]> links) throws IOException {
+            try {
+                for (long[] link : links) {
+                    insert.setLong(1, link[0]);
+                    insert.setLong(2, link[1]);
+                    insert.executeUpdate();
+                }
+            } catch (SQLException e) {
+                throw new IOException(e);
+            }
+        }
+
+        // runs an insert and returns the id of the new row
+        private long insert(PreparedStatement insert) throws SQLException {
+            insert.executeUpdate();
+            Statement statement = mConnection.createStatement();
+            try {
+                ResultSet rs = statement.executeQuery("SELECT last_insert_rowid()");
+                rs.next();
+                return rs.getLong(1);
+            } finally {
+                statement.close();
+            }
+        }
+    }
+}